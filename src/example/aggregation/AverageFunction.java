@@ -36,7 +36,11 @@ import peersim.cdsim.CDProtocol;
  * @author Alberto Montresor
  * @version $Revision: 1.11 $
  */
-public class AverageFunction extends SingleValueHolder implements CDProtocol {
+public class AverageFunction extends SingleValueHolder implements CDProtocol,
+        Recyclable {
+
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates a new {@link example.aggregation.AverageFunction} protocol
      * instance.
@@ -48,6 +52,17 @@ public class AverageFunction extends SingleValueHolder implements CDProtocol {
         super(prefix);
     }
 
+    /**
+     * Resets the value to that of the prototype, so that removed nodes can
+     * be reused by {@link peersim.dynamics.DynamicNetwork}.
+     * 
+     * @param prototype
+     *            the protocol of the prototype node.
+     */
+    public void recycle(Protocol prototype) {
+        this.value = ((AverageFunction) prototype).value;
+    }
+
     /**
      * Using an underlying {@link Linkable} protocol choses a neighbor and
      * performs a variance reduction step.
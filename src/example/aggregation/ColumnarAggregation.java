@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.aggregation;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.ParallelFor;
+import peersim.vector.SingleValue;
+
+/**
+ * Executes a cycle of a pairwise aggregation protocol (averaging, maximum or
+ * minimum) on the whole network as a single control. Instead of calling a
+ * protocol on each node, it keeps the values of all the nodes in one array
+ * and the overlay as arrays of neighbor positions (a snapshot of a
+ * {@link Linkable} protocol), so a cycle is a tight loop over arrays.
+ * The values are read from a {@link SingleValue} protocol at the beginning of
+ * each execution and written back at the end, so that observers such as
+ * {@link AverageObserver} can be used as usual, and changes made to the
+ * values by other components between executions are taken into account. The protocol holding the
+ * values does not need to be a {@link peersim.cdsim.CDProtocol}: a
+ * {@link peersim.vector.SingleValueHolder} is enough.
+ * <p>
+ * By default the nodes are processed one after the other, in the order of
+ * their index at the time of the snapshot: each node picks a random neighbor
+ * using {@link CommonState#r} and both get the combined value, unless the
+ * neighbor is not up. This is the same as executing
+ * {@link AverageFunction} on a network that is not shuffled, including the
+ * random numbers drawn.
+ * <p>
+ * If {@value #PAR_MATCHING} is defined, each cycle is executed as a set of
+ * disjoint exchanges instead: every node proposes a random neighbor, the
+ * proposals are accepted in index order if neither node has been matched
+ * yet, and the exchanges of the matching are executed concurrently by
+ * {@link Network#getThreads} threads. The random numbers depend only on one
+ * number drawn from {@link CommonState#r} per cycle, so the result does
+ * not depend on the number of threads.
+ *
+ * @see AverageFunction
+ */
+public class ColumnarAggregation implements Control {
+
+    // /////////////////////////////////////////////////////////////////////
+    // Constants
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * The {@link SingleValue} protocol holding the values.
+     *
+     * @config
+     */
+    private static final String PAR_PROT = "protocol";
+
+    /**
+     * The {@link Linkable} protocol defining the overlay.
+     *
+     * @config
+     */
+    private static final String PAR_LINKABLE = "linkable";
+
+    /**
+     * The aggregation function: "average", "max" or "min". Defaults to
+     * "average".
+     *
+     * @config
+     */
+    private static final String PAR_FUNCTION = "function";
+
+    /**
+     * If defined, the snapshot of the overlay is taken at each execution,
+     * which is necessary if the overlay or the network changes. Otherwise it
+     * is taken at the first execution only.
+     *
+     * @config
+     */
+    private static final String PAR_REWIRE = "rewire";
+
+    /**
+     * If defined, the exchanges of a cycle form a matching and are executed
+     * concurrently, see the class comment.
+     *
+     * @config
+     */
+    private static final String PAR_MATCHING = "matching";
+
+    private static final int AVERAGE = 0, MAX = 1, MIN = 2;
+
+    // /////////////////////////////////////////////////////////////////////
+    // Fields
+    // /////////////////////////////////////////////////////////////////////
+
+    /** The protocol holding the values */
+    private final int pid;
+
+    /** The linkable protocol */
+    private final int lid;
+
+    /** The aggregation function */
+    private final int function;
+
+    private final boolean rewire;
+
+    private final boolean matching;
+
+    /** The nodes of the snapshot; their position is their column */
+    private Node[] nodes;
+
+    /** The values of the nodes during an execution, by column */
+    private double[] values;
+
+    /** The neighbors of column i are at positions offset[i] to offset[i+1] */
+    private int[] offset;
+
+    /** The columns of the neighbors, -1 for nodes not in the network */
+    private int[] neighbors;
+
+    /** Whether the node of each column is up, null if all are up */
+    private boolean[] up;
+
+    /** The proposed partner of each column in the matching mode */
+    private int[] partner;
+
+    // /////////////////////////////////////////////////////////////////////
+    // Constructor
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new control reading configuration parameters.
+     */
+    public ColumnarAggregation(String name) {
+        pid = Configuration.getPid(name + "." + PAR_PROT);
+        lid = Configuration.getPid(name + "." + PAR_LINKABLE);
+        String f = Configuration.getString(name + "." + PAR_FUNCTION,
+                "average");
+        if (f.equals("average"))
+            function = AVERAGE;
+        else if (f.equals("max"))
+            function = MAX;
+        else if (f.equals("min"))
+            function = MIN;
+        else
+            throw new IllegalParameterException(name + "." + PAR_FUNCTION,
+                    "Unknown function " + f);
+        rewire = Configuration.contains(name + "." + PAR_REWIRE);
+        matching = Configuration.contains(name + "." + PAR_MATCHING);
+    }
+
+    // /////////////////////////////////////////////////////////////////////
+    // Methods
+    // /////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the values from the protocol, executes one cycle of exchanges
+     * and writes the values back to the protocol.
+     *
+     * @return always false
+     */
+    public boolean execute() {
+        if (nodes == null || rewire)
+            snapshot();
+        for (int i = 0; i < nodes.length; ++i)
+            values[i] = ((SingleValue) nodes[i].getProtocol(pid)).getValue();
+        updateUp();
+        if (matching)
+            matchingCycle();
+        else
+            sequentialCycle();
+        for (int i = 0; i < nodes.length; ++i)
+            ((SingleValue) nodes[i].getProtocol(pid)).setValue(values[i]);
+        return false;
+    }
+
+    /**
+     * Reads the nodes and the overlay.
+     */
+    private void snapshot() {
+        final int n = Network.size();
+        nodes = new Node[n];
+        values = new double[n];
+        offset = new int[n + 1];
+        for (int i = 0; i < n; ++i) {
+            nodes[i] = Network.get(i);
+            offset[i + 1] = offset[i]
+                    + ((Linkable) nodes[i].getProtocol(lid)).degree();
+        }
+        neighbors = new int[offset[n]];
+        for (int i = 0; i < n; ++i) {
+            Linkable linkable = (Linkable) nodes[i].getProtocol(lid);
+            for (int k = offset[i]; k < offset[i + 1]; ++k) {
+                Node peer = linkable.getNeighbor(k - offset[i]);
+                int j = peer.getIndex();
+                neighbors[k] = (j >= 0 && j < n && nodes[j] == peer) ? j : -1;
+            }
+        }
+        partner = null;
+    }
+
+    /**
+     * Reads which nodes are up. If all the nodes of the network are up, no
+     * node has to be checked.
+     */
+    private void updateUp() {
+        if (Network.liveSize() == Network.size()) {
+            up = null;
+            return;
+        }
+        if (up == null || up.length != nodes.length)
+            up = new boolean[nodes.length];
+        for (int i = 0; i < nodes.length; ++i)
+            up[i] = nodes[i].isUp();
+    }
+
+    private boolean isUp(int i) {
+        return i >= 0 && (up == null || up[i]);
+    }
+
+    /**
+     * Combines the values of the given columns.
+     */
+    private void combine(int i, int j) {
+        final double a = values[i], b = values[j];
+        final double v;
+        if (function == AVERAGE)
+            v = (a + b) / 2;
+        else if (function == MAX)
+            v = Math.max(a, b);
+        else
+            v = Math.min(a, b);
+        values[i] = v;
+        values[j] = v;
+    }
+
+    /**
+     * Executes the exchanges one after the other, as {@link AverageFunction}.
+     */
+    private void sequentialCycle() {
+        for (int i = 0; i < nodes.length; ++i) {
+            if (!isUp(i))
+                continue;
+            final int degree = offset[i + 1] - offset[i];
+            if (degree == 0)
+                continue;
+            final int j = neighbors[offset[i] + CommonState.r.nextInt(degree)];
+            if (isUp(j))
+                combine(i, j);
+        }
+    }
+
+    /**
+     * Executes a matching of exchanges concurrently.
+     */
+    private void matchingCycle() {
+        final int n = nodes.length;
+        if (partner == null)
+            partner = new int[n];
+        final long seed = CommonState.r.nextLong();
+
+        // proposals, independent of each other
+        ParallelFor.run(n, Network.getThreads(), new ParallelFor.Range() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    final int degree = offset[i + 1] - offset[i];
+                    int j = -1;
+                    if (isUp(i) && degree > 0)
+                        j = neighbors[offset[i] + nextInt(seed, i, degree)];
+                    partner[i] = (isUp(j) && j != i) ? j : -1;
+                }
+            }
+        });
+
+        // greedy matching in index order; matched[i] is i's partner or -1
+        final int[] first = new int[n];
+        int pairs = 0;
+        final int[] matched = new int[n];
+        java.util.Arrays.fill(matched, -1);
+        for (int i = 0; i < n; ++i) {
+            final int j = partner[i];
+            if (j >= 0 && matched[i] < 0 && matched[j] < 0) {
+                matched[i] = j;
+                matched[j] = i;
+                first[pairs++] = i;
+            }
+        }
+
+        // exchanges, on disjoint pairs
+        ParallelFor.run(pairs, Network.getThreads(), new ParallelFor.Range() {
+            public void run(int from, int to) {
+                for (int p = from; p < to; ++p)
+                    combine(first[p], matched[first[p]]);
+            }
+        });
+    }
+
+    /**
+     * Returns a random integer in [0,bound) determined by the seed and the
+     * given key, using the SplitMix64 mixing function.
+     */
+    private static int nextInt(long seed, int key, int bound) {
+        long z = seed + 0x9e3779b97f4a7c15L * (key + 1L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 33) * bound) >>> 31);
+    }
+}
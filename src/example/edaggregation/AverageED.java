@@ -31,6 +31,8 @@ import peersim.edsim.EDProtocol;
 public class AverageED extends SingleValueHolder
 implements CDProtocol, EDProtocol {
 
+private static final long serialVersionUID = 1L;
+
 //--------------------------------------------------------------------------
 // Initialization
 //--------------------------------------------------------------------------
@@ -101,7 +103,9 @@ public void processEvent( Node node, int pid, Object event ) {
 * The type of a message. It contains a value of type double and the
 * sender node of type {@link peersim.core.Node}.
 */
-class AverageMessage {
+class AverageMessage implements java.io.Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	final double value;
 	/** If not null,
@@ -0,0 +1,444 @@
+package example.gossip;
+
+import java.util.Arrays;
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.core.Linkable;
+import peersim.core.Node;
+import peersim.core.CommonState;
+import peersim.edsim.EDProtocol;
+import peersim.transport.Transport;
+
+
+/**
+ * The same shuffling protocol as {@link BasicShuffle}, with a compact representation for large
+ * networks. It draws the same random numbers and sends the same messages, so a simulation gives
+ * the same results with either class, but:
+ * <ul>
+ * <li>the cache is kept in flat arrays: the neighbors, and the IDs of the nodes the entries were
+ * sent to, instead of a list of {@link Entry} objects;</li>
+ * <li>the IDs of the neighbors are also kept in a small open addressing hash table, so that
+ * membership tests take constant time;</li>
+ * <li>the messages carry arrays of nodes, and are reused after they have been processed.</li>
+ * </ul>
+ * In this way a shuffle does not allocate objects, which matters with millions of nodes and large
+ * caches.
+ */
+public class ArrayShuffle  implements Linkable, EDProtocol, CDProtocol{
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String PAR_CACHE = "cacheSize";
+	private static final String PAR_L = "shuffleLength";
+	private static final String PAR_TRANSPORT = "transport";
+
+	// Marks a free slot of the hash table, and an entry that has not been sent.
+	private static final long NONE = -1;
+
+	private final int tid;
+
+	// The neighbors known by this node, or the cache.
+	private Node[] cache;
+
+	// The ID of the node each entry was last sent to, or NONE.
+	private long[] sentTo;
+
+	// The number of entries in the cache.
+	private int len;
+
+	// The IDs of the neighbors in the cache, in an open addressing hash table.
+	private long[] index;
+
+	// The maximum size of the cache.
+	private final int size;
+
+	// The maximum length of the shuffle exchange.
+	private final int l;
+
+    // The status of the node waiting for a response from a shuffling operation.
+    private boolean waiting;
+
+    // Turns on/off debugging printing.
+    private boolean debug = false;
+
+    // The messages that have been processed, to be reused.
+    private static Message[] pool = new Message[16];
+
+    private static int poolSize = 0;
+
+	/**
+	 * Constructor that initializes the relevant simulation parameters and other class variables.
+	 *
+	 * @param n simulation parameters
+	 */
+	public ArrayShuffle(String n)
+	{
+		this.size = Configuration.getInt(n + "." + PAR_CACHE);
+		this.l = Configuration.getInt(n + "." + PAR_L);
+		this.tid = Configuration.getPid(n + "." + PAR_TRANSPORT);
+
+		allocate();
+        waiting = false;
+	}
+
+	// Allocates the empty cache.
+	private void allocate() {
+		cache = new Node[size];
+		sentTo = new long[size];
+		len = 0;
+		int capacity = 4;
+		while (capacity < 2 * size) {
+			capacity *= 2;
+		}
+		index = new long[capacity];
+		Arrays.fill(index, NONE);
+	}
+
+	/*
+	 * Starts a shuffle with a random neighbor, as in BasicShuffle.
+	 *
+	 * @see peersim.cdsim.CDProtocol#nextCycle(peersim.core.Node, int)
+	 */
+	@Override
+	public void nextCycle(Node node, int protocolID) {
+        if (debug) {
+            System.out.println("nextCycle: Node " + node.getID() + " has cache:" +
+                               listToString(cache, len));
+        }
+
+        // If this node is waiting for a response, or its cache is empty, return.
+        if (waiting || len == 0) {
+            return;
+        }
+
+        waiting = true;
+
+        // Select a random neighbor Q to initiate the shuffling.
+        int neighborIndex = CommonState.r.nextInt(len);
+        Node neighbor = cache[neighborIndex];
+
+		// If the cache is full, remove Q from the cache.
+        if (len == size) {
+            remove(neighborIndex);
+        }
+
+		// Select a subset of other l-1 random neighbors, and add this node to it.
+        Message message = Message.get(node, MessageType.SHUFFLE_REQUEST, l + 1);
+        int count = 0;
+        int r = CommonState.r.nextInt(len);
+        for (int i = 0; count <= l - 1 && i < len; i++) {
+            int j = (i + r) % len;
+            if (cache[j].getID() != neighbor.getID()) {
+                sentTo[j] = neighbor.getID();
+                message.add(cache[j]);
+                count++;
+            }
+        }
+        message.add(node);
+
+		// Send a shuffle request to Q containing the subset.
+        Transport tr = (Transport) node.getProtocol(tid);
+        tr.send(node, neighbor, message, protocolID);
+
+        if (debug) {
+            System.out.println("nextCycle: Node " + node.getID() + " sends subset " +
+                               listToString(message.list, message.length) + " to node " +
+                               neighbor.getID());
+        }
+	}
+
+	/*
+	 * Handles the messages of the shuffle, as in BasicShuffle.
+	 *
+	 * @see peersim.edsim.EDProtocol#processEvent(peersim.core.Node, int, java.lang.Object)
+	 */
+	@Override
+	public void processEvent(Node node, int pid, Object event) {
+		// Let's name this node as Q, and the sender as P.
+		Message message = (Message) event;
+		Node sender = message.node;
+
+		switch (message.type) {
+		case SHUFFLE_REQUEST:
+            if (waiting) {
+                // Reject the request. As in BasicShuffle, the node of the answer is P.
+                Message response = Message.get(sender, MessageType.SHUFFLE_REJECTED, 0);
+                Transport tr = (Transport) node.getProtocol(tid);
+                tr.send(node, sender, response, pid);
+
+                if (debug) {
+                    System.out.format("processEvent: Node %d rejects shuffle request from node %d\n",
+                                      node.getID(), sender.getID());
+                }
+            } else {
+                // Select a random subset of size l of the neighbors, and send it back.
+                Message reply = Message.get(node, MessageType.SHUFFLE_REPLY, l + 1);
+                int count = 0;
+                int r = (len == 0) ? 0 : CommonState.r.nextInt(len);
+                for (int i = 0; count <= l && i < len; i++) {
+                    int j = (i + r) % len;
+                    if (cache[j].getID() != sender.getID()) {
+                        sentTo[j] = sender.getID();
+                        reply.add(cache[j]);
+                        count++;
+                    }
+                }
+                Transport tr = (Transport) node.getProtocol(tid);
+                tr.send(node, sender, reply, pid);
+
+                if (debug) {
+                    System.out.format("processEvent: Node %d replies to node %d with subset %s\n",
+                                      node.getID(), sender.getID(),
+                                      listToString(reply.list, reply.length));
+                }
+
+                // Include the neighbors sent by P.
+                for (int i = 0; i < message.length; i++) {
+                    updateCache(message.list[i], node.getID(), sender.getID());
+                }
+                resetSentTo(sender.getID());
+            }
+			break;
+
+		case SHUFFLE_REPLY:
+            if (debug) {
+                System.out.format("processEvent: Node %d received shuffle set %s from node %d\n",
+                                  node.getID(), listToString(message.list, message.length),
+                                  sender.getID());
+            }
+            // Include the neighbors sent by P, the answer to our request.
+            for (int i = 0; i < message.length; i++) {
+                updateCache(message.list[i], node.getID(), sender.getID());
+            }
+            resetSentTo(sender.getID());
+            waiting = false;
+			break;
+
+		case SHUFFLE_REJECTED:
+            // If P was originally removed from the cache, add it again.
+            if (!inCache(sender)) {
+                updateCache(sender, node.getID(), sender.getID());
+            }
+            resetSentTo(sender.getID());
+            waiting = false;
+			break;
+
+		default:
+			break;
+		}
+		Message.release(message);
+	}
+
+    // Updates the cache as BasicShuffle does: no neighbor appears twice, empty slots are used
+    // first, and if the cache is full an entry sent to the given destination is replaced.
+    private void updateCache(Node node, long thisNodeID, long destNodeID) {
+        if (inCache(node) || node.getID() == thisNodeID) {
+            return;
+        }
+
+        if (len < size) {
+            // There is an empty cache slot;
+            cache[len] = node;
+            sentTo[len] = NONE;
+            len++;
+            indexAdd(node.getID());
+        } else if (len == size) {
+            // The cache is full. Replace an entry in the cache that has just been sent;
+            for (int i = 0; i < len; i++) {
+                if (sentTo[i] == destNodeID) {
+                    indexRemove(cache[i].getID());
+                    cache[i] = node;
+                    sentTo[i] = NONE;
+                    indexAdd(node.getID());
+                    break;
+                }
+            }
+        }
+    }
+
+    // Clears the entries sent to the given node.
+    private void resetSentTo(long id) {
+        for (int i = 0; i < len; i++) {
+            if (sentTo[i] == id) {
+                sentTo[i] = NONE;
+            }
+        }
+    }
+
+    // Removes the given entry, keeping the order of the others.
+    private void remove(int i) {
+        indexRemove(cache[i].getID());
+        System.arraycopy(cache, i + 1, cache, i, len - i - 1);
+        System.arraycopy(sentTo, i + 1, sentTo, i, len - i - 1);
+        len--;
+        cache[len] = null;
+    }
+
+    private boolean inCache(Node node) {
+        return index[slot(node.getID())] != NONE;
+    }
+
+    // Returns the slot of the hash table containing the given ID, or the free slot where it
+    // should be inserted.
+    private int slot(long id) {
+        final int mask = index.length - 1;
+        int h = hash(id, mask);
+        while (index[h] != NONE && index[h] != id) {
+            h = (h + 1) & mask;
+        }
+        return h;
+    }
+
+    private static int hash(long id, int mask) {
+        return (int) ((id * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+    }
+
+    private void indexAdd(long id) {
+        index[slot(id)] = id;
+    }
+
+    // Removes the given ID, shifting back the following entries of the same cluster.
+    private void indexRemove(long id) {
+        final int mask = index.length - 1;
+        int i = slot(id);
+        if (index[i] == NONE) {
+            return;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (index[j] == NONE) {
+                break;
+            }
+            int k = hash(index[j], mask);
+            // keep the entry if its home slot is cyclically in (i, j]
+            if ((i <= j) ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            index[i] = index[j];
+            i = j;
+        }
+        index[i] = NONE;
+    }
+
+    private static String listToString(Node[] list, int length) {
+        if (length == 0) {
+            return "{}";
+        }
+
+        StringBuilder str = new StringBuilder("{");
+
+        for (int i = 0; i < length - 1; i++) {
+            str.append(list[i].getID()).append(", ");
+        }
+
+        str.append(list[length - 1].getID()).append("}");
+
+        return str.toString();
+    }
+
+	@Override
+	public int degree() {
+		return len;
+	}
+
+	@Override
+	public Node getNeighbor(int i) {
+		if (i >= len) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + len);
+		}
+		return cache[i];
+	}
+
+	@Override
+	public boolean addNeighbor(Node neighbour) {
+		if (contains(neighbour))
+			return false;
+
+		if (len >= size)
+			return false;
+
+		cache[len] = neighbour;
+		sentTo[len] = NONE;
+		len++;
+		indexAdd(neighbour.getID());
+
+		return true;
+	}
+
+	@Override
+	public boolean contains(Node neighbor) {
+		return inCache(neighbor);
+	}
+
+	public Object clone()
+	{
+		ArrayShuffle gossip = null;
+		try {
+			gossip = (ArrayShuffle) super.clone();
+		} catch( CloneNotSupportedException e ) {
+
+		}
+		gossip.allocate();
+
+		return gossip;
+	}
+
+	@Override
+	public void onKill() {
+	}
+
+	@Override
+	public void pack() {
+	}
+
+	/**
+	 * The message of the protocol: the sender (except for rejections, see
+	 * {@link BasicShuffle}), the type and the shuffle list. Messages are taken from a pool and
+	 * returned to it after they have been processed.
+	 */
+	private static class Message implements java.io.Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		Node node;
+
+		MessageType type;
+
+		Node[] list = new Node[0];
+
+		int length;
+
+		// Returns a message from the pool, with an empty list of the given capacity.
+		static Message get(Node node, MessageType type, int capacity) {
+			Message m;
+			if (poolSize > 0) {
+				m = pool[--poolSize];
+				pool[poolSize] = null;
+			} else {
+				m = new Message();
+			}
+			m.node = node;
+			m.type = type;
+			if (m.list.length < capacity) {
+				m.list = new Node[capacity];
+			}
+			m.length = 0;
+			return m;
+		}
+
+		// Returns the given message to the pool.
+		static void release(Message m) {
+			Arrays.fill(m.list, 0, m.length, null);
+			m.node = null;
+			if (poolSize == pool.length) {
+				pool = Arrays.copyOf(pool, 2 * poolSize);
+			}
+			pool[poolSize++] = m;
+		}
+
+		void add(Node n) {
+			list[length++] = n;
+		}
+	}
+}
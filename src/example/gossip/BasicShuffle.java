@@ -30,6 +30,8 @@ import peersim.transport.Transport;
  *
  */
 public class BasicShuffle  implements Linkable, EDProtocol, CDProtocol{
+
+	private static final long serialVersionUID = 1L;
 	
 	private static final String PAR_CACHE = "cacheSize";
 	private static final String PAR_L = "shuffleLength";
@@ -2,7 +2,10 @@ package example.gossip;
 
 import peersim.core.Node;
 
-public class Entry {
+public class Entry implements java.io.Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private Node node;
 	private Node sentTo;
 	
@@ -4,7 +4,9 @@ import java.util.List;
 
 import peersim.core.Node;
 
-public class GossipMessage {
+public class GossipMessage implements java.io.Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	private Node node;
 	private List<Entry> shuffleList;
@@ -36,6 +36,8 @@ import peersim.core.Protocol;
  */
 public class InetCoordinates implements Protocol {
 
+    private static final long serialVersionUID = 1L;
+
     // ------------------------------------------------------------------------
     // Fields
     // ------------------------------------------------------------------------
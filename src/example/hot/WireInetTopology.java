@@ -18,9 +18,10 @@
 
 package example.hot;
 
+import java.util.*;
+
 import peersim.config.Configuration;
 import peersim.core.Linkable;
-import peersim.core.Network;
 import peersim.core.Node;
 import peersim.dynamics.WireGraph;
 import peersim.graph.Graph;
@@ -77,64 +78,265 @@ public class WireInetTopology extends WireGraph {
     }
 
     /**
-     * Performs the actual wiring.
+     * Performs the actual wiring. Each node, in increasing index order, is
+     * connected to the node with a lower index that minimizes its distance in
+     * hops from the root plus alpha times its Euclidean distance; ties are
+     * broken in favour of the lowest index.
+     * <p>
+     * Unless alpha is negative, the parent is not searched among all the
+     * nodes with a lower index, but using a uniform grid of the nodes already
+     * placed, one for each distance in hops. The levels are visited in
+     * increasing order of hops and the cells of each grid in rings of
+     * increasing distance, stopping when they cannot contain a better
+     * parent, so the topology is the same but it can be built for millions
+     * of nodes.
+     * 
      * @param g a {@link peersim.graph.Graph} interface object to work on.
      */
     public void wire(Graph g) {
+        final int size = g.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; ++i) {
+            InetCoordinates c = (InetCoordinates) ((Node) g.getNode(i))
+                    .getProtocol(coordPid);
+            x[i] = c.getX();
+            y[i] = c.getY();
+            if (size > 1 && (x[i] == -1 || y[i] == -1))
+                throw new RuntimeException(
+                        "Found un-initialized coordinate. Use e.g., InetInitializer class in the config file.");
+        }
+        int[] parent = (alpha < 0) ? parentsScan(x, y, alpha) : parents(x, y,
+                alpha);
+        for (int i = 1; i < size; ++i) {
+            g.setEdge(i, parent[i]);
+        }
+    }
+
+    /**
+     * Returns the parent of each node (except the root, index 0) computing the
+     * cost of all the candidates, in quadratic time.
+     * 
+     * @param x
+     *            the x coordinates of the nodes
+     * @param y
+     *            the y coordinates of the nodes
+     * @param alpha
+     *            the weight of the distance
+     * @return the index of the parent of each node
+     */
+    static int[] parentsScan(double[] x, double[] y, double alpha) {
+        final int size = x.length;
         /** Contains the distance in hops from the root node for each node. */
-        int[] hops = new int[Network.size()];
+        int[] hops = new int[size];
+        int[] parent = new int[size];
         // connect all the nodes other than roots
-        for (int i = 1; i < Network.size(); ++i) {
-            Node n = (Node) g.getNode(i);
-
+        for (int i = 1; i < size; ++i) {
             // Look for a suitable parent node between those allready part of
             // the overlay topology: alias FIND THE MINIMUM!
-            // Node candidate = null;
             int candidate_index = 0;
             double min = Double.POSITIVE_INFINITY;
             for (int j = 0; j < i; j++) {
-                Node parent = (Node) g.getNode(j);
                 double jHopDistance = hops[j];
 
                 double value = jHopDistance
-                        + (alpha * distance(n, parent, coordPid));
+                        + (alpha * distance(x[i], y[i], x[j], y[j]));
                 if (value < min) {
-                    // candidate = parent; // best parent node to connect to
                     min = value;
                     candidate_index = j;
                 }
             }
 
             hops[i] = hops[candidate_index] + 1;
-            g.setEdge(i, candidate_index);
+            parent[i] = candidate_index;
         }
+        return parent;
     }
 
     /**
-     * Utility function: returns the Euclidean distance based on the x,y
-     * coordinates of a node. A {@link RuntimeException} is raised if a not
-     * initialized coordinate is found.
-     * 
-     * @param new_node
-     *            the node to insert in the topology.
-     * @param old_node
-     *            a node already part of the topology.
-     * @param coordPid
-     *            identifier index.
-     * @return the distance value.
+     * Returns the same parents as {@link #parentsScan}, using a grid for
+     * each distance in hops. The parameter alpha must not be negative.
      */
-    private static double distance(Node new_node, Node old_node, int coordPid) {
-        double x1 = ((InetCoordinates) new_node.getProtocol(coordPid))
-                .getX();
-        double x2 = ((InetCoordinates) old_node.getProtocol(coordPid))
-                .getX();
-        double y1 = ((InetCoordinates) new_node.getProtocol(coordPid))
-                .getY();
-        double y2 = ((InetCoordinates) old_node.getProtocol(coordPid))
-                .getY();
-        if (x1 == -1 || x2 == -1 || y1 == -1 || y2 == -1)
-            throw new RuntimeException(
-                    "Found un-initialized coordinate. Use e.g., InetInitializer class in the config file.");
+    static int[] parents(double[] x, double[] y, double alpha) {
+        final int size = x.length;
+        int[] parent = new int[size];
+        if (size == 0)
+            return parent;
+        double minX = x[0], maxX = x[0], minY = y[0], maxY = y[0];
+        for (int i = 1; i < size; ++i) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int[] hops = new int[size];
+        int[] next = new int[size]; // the next node in the same cell
+        List<Level> levels = new ArrayList<Level>();
+        levels.add(new Level(minX, maxX, minY, maxY));
+        levels.get(0).add(0, x, y, next);
+        for (int i = 1; i < size; ++i) {
+            Best best = new Best();
+            for (int h = 0; h < levels.size() && h <= best.value; ++h) {
+                levels.get(h).search(h, alpha, i, x, y, next, best);
+            }
+            hops[i] = hops[best.index] + 1;
+            parent[i] = best.index;
+            if (hops[i] == levels.size())
+                levels.add(new Level(minX, maxX, minY, maxY));
+            levels.get(hops[i]).add(i, x, y, next);
+        }
+        return parent;
+    }
+
+    /**
+     * Compares the time needed to find the parents with and without the grids,
+     * on nodes placed as by {@link InetInitializer}, and checks that the
+     * results are the same. The arguments are the number of nodes (default
+     * 10000), alpha (default 0.5) and the random seed.
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double alpha = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+        Random r = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+        double[] x = new double[size];
+        double[] y = new double[size];
+        x[0] = y[0] = 0.5;
+        for (int i = 1; i < size; ++i) {
+            x[i] = r.nextDouble();
+            y[i] = r.nextDouble();
+        }
+        long time = System.currentTimeMillis();
+        int[] grid = parents(x, y, alpha);
+        System.out.println("grid: " + (System.currentTimeMillis() - time)
+                + " ms");
+        time = System.currentTimeMillis();
+        int[] scan = parentsScan(x, y, alpha);
+        System.out.println("scan: " + (System.currentTimeMillis() - time)
+                + " ms");
+        System.out.println(Arrays.equals(grid, scan) ? "same parents"
+                : "DIFFERENT parents");
+    }
+
+    /**
+     * Utility function: returns the Euclidean distance between two points.
+     */
+    private static double distance(double x1, double y1, double x2, double y2) {
         return Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
     }
+
+    // --------------------------------------------------------------------------
+    // Grid
+    // --------------------------------------------------------------------------
+
+    /** The best parent found so far. */
+    private static class Best {
+        double value = Double.POSITIVE_INFINITY;
+
+        int index = 0;
+    }
+
+    /**
+     * The nodes at the same distance in hops from the root, in a uniform grid
+     * over the bounding box of all the nodes. The nodes of a cell form a list
+     * linked through an array shared by all the levels.
+     */
+    private static class Level {
+
+        /** The bounding box of all the nodes */
+        private final double minX, minY, width, height;
+
+        /** The number of cells per side */
+        private int side = 1;
+
+        /** The first node of each cell, or -1 */
+        private int[] head = { -1 };
+
+        /** The nodes of this level */
+        private int[] members = new int[4];
+
+        private int count = 0;
+
+        Level(double minX, double maxX, double minY, double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.width = maxX - minX;
+            this.height = maxY - minY;
+        }
+
+        private int column(double px) {
+            int c = width > 0 ? (int) ((px - minX) / width * side) : 0;
+            return Math.min(Math.max(c, 0), side - 1);
+        }
+
+        private int row(double py) {
+            int r = height > 0 ? (int) ((py - minY) / height * side) : 0;
+            return Math.min(Math.max(r, 0), side - 1);
+        }
+
+        /**
+         * Adds the given node, making the grid finer if there are more than
+         * four nodes per cell on average.
+         */
+        void add(int i, double[] x, double[] y, int[] next) {
+            if (count == members.length)
+                members = Arrays.copyOf(members, 2 * count);
+            members[count++] = i;
+            if (count > 4 * side * side) {
+                side = (int) Math.ceil(Math.sqrt(count));
+                head = new int[side * side];
+                Arrays.fill(head, -1);
+                for (int k = 0; k < count; ++k)
+                    link(members[k], x, y, next);
+            } else {
+                link(i, x, y, next);
+            }
+        }
+
+        private void link(int i, double[] x, double[] y, int[] next) {
+            int cell = row(y[i]) * side + column(x[i]);
+            next[i] = head[cell];
+            head[cell] = i;
+        }
+
+        /**
+         * Updates the best parent of node i with the nodes of this level,
+         * whose distance in hops is h. The cells are visited in square rings
+         * around the cell of i, until the distance of the ring is large
+         * enough that no node in it can be better than the best found.
+         */
+        void search(int h, double alpha, int i, double[] x, double[] y,
+                int[] next, Best best) {
+            final int cx = column(x[i]), cy = row(y[i]);
+            // the smallest side of a cell; cells at ring r are at least r-1
+            // cells away from point i (if all the nodes are on a line, only
+            // the cells along it are used)
+            final double cell = (width > 0 && height > 0) ? Math.min(width,
+                    height) / side : Math.max(width, height) / side;
+            for (int r = 0; r <= side; ++r) {
+                if (r > 1 && h + alpha * cell * (r - 1) * (1 - 1e-9) > best.value)
+                    return;
+                for (int gy = cy - r; gy <= cy + r; ++gy) {
+                    if (gy < 0 || gy >= side)
+                        continue;
+                    // the whole row if it is on the border of the ring,
+                    // otherwise its two ends
+                    final int step = (gy == cy - r || gy == cy + r) ? 1
+                            : Math.max(1, 2 * r);
+                    for (int gx = cx - r; gx <= cx + r; gx += step) {
+                        if (gx < 0 || gx >= side)
+                            continue;
+                        for (int j = head[gy * side + gx]; j >= 0; j = next[j]) {
+                            double value = h
+                                    + (alpha * distance(x[i], y[i], x[j], y[j]));
+                            if (value < best.value || value == best.value
+                                    && j < best.index) {
+                                best.value = value;
+                                best.index = j;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
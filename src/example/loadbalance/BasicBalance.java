@@ -38,6 +38,8 @@ import peersim.cdsim.CDProtocol;
  */
 public class BasicBalance extends SingleValueHolder implements CDProtocol {
 
+    private static final long serialVersionUID = 1L;
+
     // ------------------------------------------------------------------------
     // Parameters
     // ------------------------------------------------------------------------
@@ -58,6 +60,13 @@ public class BasicBalance extends SingleValueHolder implements CDProtocol {
 
     protected double quota; // current cycle quota
 
+    /**
+     * The statistics of the values and of the quotas that are updated when
+     * they change, registered by the observers in incremental mode. Null if
+     * not used.
+     */
+    LoadTally valueTally, quotaTally;
+
     // ------------------------------------------------------------------------
     // Initialization
     // ------------------------------------------------------------------------
@@ -75,7 +84,13 @@ public class BasicBalance extends SingleValueHolder implements CDProtocol {
         quota = quota_value;
     }
 
-    // The clone() method is inherited.
+    /** Clones the protocol, which is not registered with any statistics. */
+    public Object clone() {
+        BasicBalance bb = (BasicBalance) super.clone();
+        bb.valueTally = null;
+        bb.quotaTally = null;
+        return bb;
+    }
 
     // ------------------------------------------------------------------------
     // Methods
@@ -83,9 +98,18 @@ public class BasicBalance extends SingleValueHolder implements CDProtocol {
 
     /** Resets the current node quota value. */
     protected void resetQuota() {
+        if (quotaTally != null)
+            quotaTally.update(quota, quota_value);
         this.quota = quota_value;
     }
 
+    /** Sets the value, updating the statistics if registered. */
+    public void setValue(double value) {
+        if (valueTally != null)
+            valueTally.update(this.value, value);
+        this.value = value;
+    }
+
     /**
      * Using an underlying {@link Linkable} protocol choses a neighbor and
      * performs a variance reduction step.
@@ -148,6 +172,14 @@ public class BasicBalance extends SingleValueHolder implements CDProtocol {
             a1 -= trans;
             a2 += trans;
         }
+        if (valueTally != null)
+            valueTally.update(this.value, a1);
+        if (quotaTally != null)
+            quotaTally.update(quota, quota - trans);
+        if (neighbor.valueTally != null)
+            neighbor.valueTally.update(neighbor.value, a2);
+        if (neighbor.quotaTally != null)
+            neighbor.quotaTally.update(neighbor.quota, neighbor.quota - trans);
         this.value = a1;
         this.quota -= trans;
         neighbor.value = a2;
@@ -27,7 +27,27 @@ import peersim.vector.*;
  * This class monitors the state of the load balancing process at each cycle. It
  * is assumed that the network nodes comply to the
  * {@link peersim.vector.SingleValue} interface.
- * 
+ * <p>
+ * By default all the nodes are read at each execution. For large networks two
+ * other modes are available:
+ * <ul>
+ * <li>if {@value #PAR_SAMPLE} is defined, the statistics are estimated from a
+ * random sample of the nodes, optionally stratified (see
+ * {@value #PAR_STRATA}). The minimum and maximum are those of the sample, and
+ * the number of zeros is an estimate. Two fields are added to the output: the
+ * half widths of the confidence intervals of the average and of the number of
+ * zeros, at the level given by {@value #PAR_CONFIDENCE};</li>
+ * <li>if {@value #PAR_INCREMENTAL} is defined, the protocol must be a
+ * {@link BasicBalance}, and the statistics are exact but they are updated by
+ * the protocol at each load transfer, instead of being recomputed. The
+ * network is read again only when nodes are added or removed or when the
+ * nodes holding the minimum or the maximum load all transfer load, so this
+ * mode pays off when few nodes change their load between two executions.
+ * At most one observer per protocol can be incremental.
+ * Since the sums are updated, the average and the variance can differ from
+ * the default mode in the last digits. Loads set directly, without
+ * {@link BasicBalance#setValue}, are not seen.</li>
+ * </ul>
  */
 public class LBObserver implements Control {
 
@@ -49,6 +69,38 @@ public class LBObserver implements Control {
      */
     private static final String PAR_SHOW_VALUES = "show_values";
 
+    /**
+     * If defined, the statistics are estimated from a sample of this many
+     * nodes. Not defined by default.
+     * 
+     * @config
+     */
+    private static final String PAR_SAMPLE = "sample";
+
+    /**
+     * The number of strata of the sample. Defaults to 1, that is, simple random
+     * sampling.
+     * 
+     * @config
+     */
+    private static final String PAR_STRATA = "strata";
+
+    /**
+     * The confidence level of the intervals reported in sampling mode.
+     * Defaults to 0.95.
+     * 
+     * @config
+     */
+    private static final String PAR_CONFIDENCE = "confidence";
+
+    /**
+     * If defined, the statistics are updated incrementally. Not defined by
+     * default.
+     * 
+     * @config
+     */
+    private static final String PAR_INCREMENTAL = "incremental";
+
     // ------------------------------------------------------------------------
     // Fields
     // ------------------------------------------------------------------------
@@ -74,6 +126,21 @@ public class LBObserver implements Control {
      */
     private IncrementalStats stats = null;
 
+    /** The sample, if {@link #PAR_SAMPLE} is defined. */
+    private final LoadSample sample;
+
+    /**
+     * The statistics updated incrementally, if {@link #PAR_INCREMENTAL} is
+     * defined.
+     */
+    private final LoadTally tally;
+
+    /**
+     * The value of {@link Network#getModCount} when the tally was last filled
+     * by reading the network.
+     */
+    private long scanned;
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -91,6 +158,33 @@ public class LBObserver implements Control {
         pid = Configuration.getPid(name + "." + PAR_PROT);
         show_values = Configuration.contains(name + "." + PAR_SHOW_VALUES);
         stats = new IncrementalStats();
+        if (Configuration.contains(name + "." + PAR_SAMPLE)) {
+            sample = new LoadSample(Configuration.getInt(name + "."
+                    + PAR_SAMPLE), Configuration.getInt(name + "."
+                    + PAR_STRATA, 1), Configuration.getDouble(name + "."
+                    + PAR_CONFIDENCE, 0.95), CommonState.r.getLastSeed()
+                    + name.hashCode()) {
+                double value(Node node) {
+                    return ((SingleValue) node.getProtocol(pid)).getValue();
+                }
+            };
+        } else {
+            sample = null;
+        }
+        if (Configuration.contains(name + "." + PAR_INCREMENTAL)) {
+            if (!(Network.prototype.getProtocol(pid) instanceof BasicBalance))
+                throw new IllegalParameterException(name + "."
+                        + PAR_INCREMENTAL, "The protocol is not a BasicBalance");
+            tally = new LoadTally();
+        } else {
+            tally = null;
+        }
+        int modes = (show_values ? 1 : 0) + (sample != null ? 1 : 0)
+                + (tally != null ? 1 : 0);
+        if (modes > 1)
+            throw new IllegalParameterException(name, "At most one of "
+                    + PAR_SHOW_VALUES + ", " + PAR_SAMPLE + " and "
+                    + PAR_INCREMENTAL + " can be defined");
     }
 
     // ------------------------------------------------------------------------
@@ -99,6 +193,24 @@ public class LBObserver implements Control {
 
     // Inherits comments from the interface.
     public boolean execute() {
+        if (sample != null) {
+            sample.take();
+            System.out.println(name + ": " + CommonState.getTime() + " "
+                    + sample.average + " " + sample.max + " " + sample.min
+                    + " " + Math.round(sample.zeros) + " " + sample.var + " "
+                    + sample.averageError + " " + sample.zerosError);
+            return false;
+        }
+        if (tally != null) {
+            if (!tally.isValid() || scanned != Network.getModCount())
+                scan();
+            System.out.println(name + ": " + CommonState.getTime() + " "
+                    + tally.getAverage() + " " + tally.getMax() + " "
+                    + tally.getMin() + " " + tally.getZeros() + " "
+                    + tally.getVar());
+            return false;
+        }
+
         StringBuffer buf = new StringBuffer();
         int count_zero = 0;
 
@@ -135,4 +247,23 @@ public class LBObserver implements Control {
 
     }
 
+    /**
+     * Reads the load of all the nodes into the tally, and registers it with
+     * the protocols.
+     */
+    private void scan() {
+        tally.reset();
+        scanned = Network.getModCount();
+        final int len = Network.size();
+        for (int i = 0; i < len; i++) {
+            BasicBalance prot = (BasicBalance) Network.get(i).getProtocol(pid);
+            if (prot.valueTally != null && prot.valueTally != tally)
+                throw new IllegalParameterException(name + "."
+                        + PAR_INCREMENTAL, "Another observer already updates "
+                        + "the statistics of the protocol incrementally");
+            prot.valueTally = tally;
+            tally.add(prot.getValue());
+        }
+    }
+
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.loadbalance;
+
+import java.util.*;
+
+import peersim.core.*;
+import peersim.util.SplitRandom;
+
+/**
+ * Estimates the statistics of a value over all the nodes from a random
+ * sample of the network. It is used by the sampling mode of
+ * {@link LBObserver} and {@link QuotaObserver}.
+ * <p>
+ * The network is divided into strata of consecutive indices of about the
+ * same size, and from each stratum a number of distinct nodes proportional
+ * to its size is drawn uniformly at random; with one stratum this is simple
+ * random sampling without replacement. Only the sampled nodes are read, so
+ * the cost does not depend on the size of the network. The average and the
+ * number of zeros are estimated with the usual stratified estimators, with
+ * confidence intervals based on the normal approximation; the variance is
+ * estimated from the variance within and between the strata. The minimum
+ * and the maximum are those of the sample, so they are only bounds of the
+ * real ones.
+ * <p>
+ * The sample is drawn using a generator of its own, so sampling does not
+ * change the numbers drawn from {@link CommonState#r} by the rest of the
+ * simulation.
+ */
+abstract class LoadSample {
+
+    // ------------------------------------------------------------------------
+    // Fields
+    // ------------------------------------------------------------------------
+
+    /** The number of nodes to sample */
+    private final int size;
+
+    /** The number of strata */
+    private final int strata;
+
+    /** The half width of the confidence intervals in standard deviations */
+    private final double z;
+
+    private final SplitRandom random;
+
+    /** The indices drawn from a stratum */
+    private final Set<Integer> drawn = new HashSet<Integer>();
+
+    /** The number of nodes sampled */
+    int n;
+
+    /** The estimated average */
+    double average;
+
+    /** The half width of the confidence interval of the average */
+    double averageError;
+
+    /** The estimated variance */
+    double var;
+
+    /** The minimum and maximum of the sample */
+    double min, max;
+
+    /** The estimated number of zeros */
+    double zeros;
+
+    /** The half width of the confidence interval of the number of zeros */
+    double zerosError;
+
+    // ------------------------------------------------------------------------
+    // Constructor
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param size
+     *            the number of nodes to sample
+     * @param strata
+     *            the number of strata
+     * @param confidence
+     *            the confidence level of the intervals, e.g. 0.95
+     * @param seed
+     *            the seed of the generator used to draw the sample
+     */
+    LoadSample(int size, int strata, double confidence, long seed) {
+        this.size = size;
+        this.strata = strata;
+        this.z = quantile(confidence);
+        this.random = new SplitRandom(seed);
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods
+    // ------------------------------------------------------------------------
+
+    /** Returns the value of the given node. */
+    abstract double value(Node node);
+
+    /**
+     * Draws a new sample from the network and computes the estimates.
+     */
+    void take() {
+        final int len = Network.size();
+        final int k = Math.min(size, len);
+        final int s = Math.max(1, Math.min(strata, k));
+        final double[] weight = new double[s];
+        final double[] mean = new double[s];
+        final double[] variance = new double[s];
+        n = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        average = 0;
+        double averageVar = 0;
+        zeros = 0;
+        double zerosVar = 0;
+        if (len == 0)
+            average = zeros = Double.NaN;
+        for (int h = 0; h < s && len > 0; ++h) {
+            final int from = (int) ((long) len * h / s);
+            final int to = (int) ((long) len * (h + 1) / s);
+            final int nh = to - from;
+            final int kh = Math.max(1,
+                    (int) ((long) k * to / len - (long) k * from / len));
+            // Floyd's algorithm: kh distinct indices of [from,to)
+            drawn.clear();
+            for (int j = nh - kh; j < nh; ++j) {
+                int t = random.nextInt(j + 1);
+                drawn.add(drawn.contains(from + t) ? from + j : from + t);
+            }
+            double m = 0, m2 = 0;
+            int z0 = 0, c = 0;
+            for (Integer i : drawn) {
+                double v = value(Network.get(i));
+                // Welford's update of the mean and the sum of squares
+                double d = v - m;
+                m += d / ++c;
+                m2 += d * (v - m);
+                if (v == 0)
+                    z0++;
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+            final double fpc = 1 - (double) kh / nh;
+            final double s2 = kh > 1 ? m2 / (kh - 1) : 0;
+            final double p = (double) z0 / kh;
+            weight[h] = (double) nh / len;
+            mean[h] = m;
+            variance[h] = s2;
+            average += weight[h] * m;
+            averageVar += weight[h] * weight[h] * fpc * s2 / kh;
+            zeros += nh * p;
+            if (kh > 1)
+                zerosVar += (double) nh * nh * fpc * p * (1 - p) / (kh - 1);
+            n += kh;
+        }
+        var = 0;
+        for (int h = 0; h < s; ++h) {
+            double d = mean[h] - average;
+            var += weight[h] * (variance[h] + d * d);
+        }
+        averageError = z * Math.sqrt(averageVar);
+        zerosError = z * Math.sqrt(zerosVar);
+    }
+
+    /**
+     * Returns the number z such that a standard normal variable is in [-z,z]
+     * with the given probability.
+     */
+    private static double quantile(double confidence) {
+        double lo = 0, hi = 40;
+        for (int i = 0; i < 100; ++i) {
+            double mid = (lo + hi) / 2;
+            if (erf(mid / Math.sqrt(2)) < confidence)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * The error function, with an absolute error below 1.5e-7 (Abramowitz
+     * and Stegun, 7.1.26).
+     */
+    private static double erf(double x) {
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t
+                * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        return 1 - poly * Math.exp(-x * x);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package example.loadbalance;
+
+/**
+ * The statistics of the load (or the quota) of all the nodes, updated each
+ * time a value changes instead of being recomputed from scratch. It is used
+ * by the incremental mode of {@link LBObserver} and {@link QuotaObserver}:
+ * the observer fills the tally with a scan of the network and registers it
+ * with the {@link BasicBalance} protocols, which from then on report every
+ * change of their values.
+ * <p>
+ * The sum, the sum of squares and the number of zeros are updated in
+ * constant time. The extremes are updated in constant time as long as some
+ * node still holds them; when the last node holding the minimum or the
+ * maximum changes its value the tally becomes invalid, and the observer has
+ * to scan the network again. The quantities are computed as in
+ * {@link peersim.util.IncrementalStats}.
+ */
+class LoadTally {
+
+    // ------------------------------------------------------------------------
+    // Fields
+    // ------------------------------------------------------------------------
+
+    private double min;
+
+    private double max;
+
+    private double sum;
+
+    private double sqrsum;
+
+    private int n;
+
+    private int countmin;
+
+    private int countmax;
+
+    private int zeros;
+
+    /** False if the extremes are not known */
+    private boolean valid;
+
+    // ------------------------------------------------------------------------
+    // Constructor
+    // ------------------------------------------------------------------------
+
+    /** Calls {@link #reset}. */
+    LoadTally() {
+        reset();
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods
+    // ------------------------------------------------------------------------
+
+    /** Resets the statistics to reflect the empty set. */
+    void reset() {
+        countmin = 0;
+        countmax = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum = 0.0;
+        sqrsum = 0.0;
+        n = 0;
+        zeros = 0;
+        valid = true;
+    }
+
+    /** Adds the value of a node, during a scan. */
+    void add(double item) {
+        if (item < min) {
+            min = item;
+            countmin = 0;
+        }
+        if (item == min)
+            countmin++;
+        if (item > max) {
+            max = item;
+            countmax = 0;
+        }
+        if (item == max)
+            countmax++;
+        if (item == 0)
+            zeros++;
+        n++;
+        sum += item;
+        sqrsum += item * item;
+    }
+
+    /** Updates the statistics when the value of a node changes. */
+    void update(double old, double item) {
+        if (old == item)
+            return;
+        sum += item - old;
+        sqrsum += item * item - old * old;
+        if (old == 0)
+            zeros--;
+        if (item == 0)
+            zeros++;
+        if (!valid)
+            return;
+        if (item < min) {
+            min = item;
+            countmin = 1;
+        } else if (item == min)
+            countmin++;
+        else if (old == min && --countmin == 0)
+            valid = false;
+        if (item > max) {
+            max = item;
+            countmax = 1;
+        } else if (item == max)
+            countmax++;
+        else if (old == max && --countmax == 0)
+            valid = false;
+    }
+
+    /**
+     * Returns true if the statistics are up to date, that is, the extremes
+     * are known.
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    int getN() {
+        return n;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    /** The number of nodes whose value is zero */
+    int getZeros() {
+        return zeros;
+    }
+
+    double getAverage() {
+        return sum / n;
+    }
+
+    /** The empirical variance, as in {@link peersim.util.IncrementalStats} */
+    double getVar() {
+        double var = (((double) n) / (n - 1))
+                * (sqrsum / n - getAverage() * getAverage());
+        return (var >= 0.0 ? var : 0.0);
+    }
+
+    /**
+     * Prints the statistics in the format of
+     * {@link peersim.util.IncrementalStats#toString}.
+     */
+    public String toString() {
+        return min + " " + max + " " + n + " " + sum / n + " " + getVar()
+                + " " + countmin + " " + countmax;
+    }
+}
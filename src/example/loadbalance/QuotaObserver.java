@@ -32,6 +32,16 @@ import peersim.util.*;
  * {@link peersim.vector.VectorObserver} the following way: class
  * {@link BasicBalance} needs to implement a public method "getQuota", and this
  * method needs to be configured as "getter".
+ * <p>
+ * As in {@link LBObserver}, the statistics can be estimated from a sample of
+ * the nodes, if {@value #PAR_SAMPLE} is defined, or updated by the protocols
+ * at each load transfer, if {@value #PAR_INCREMENTAL} is defined. In
+ * sampling mode the line contains the minimum and maximum of the sample, the
+ * sample size, the estimated average and variance, and the half width of the
+ * confidence interval of the average. In incremental mode it is the same as
+ * in the default mode, and the network is read again only when nodes are
+ * added or removed or when the nodes holding the minimum or the maximum quota
+ * all change it. At most one observer per protocol can be incremental.
  */
 public class QuotaObserver implements Control {
 
@@ -46,6 +56,38 @@ public class QuotaObserver implements Control {
      */
     private static final String PAR_PROT = "protocol";
 
+    /**
+     * If defined, the statistics are estimated from a sample of this many
+     * nodes. Not defined by default.
+     * 
+     * @config
+     */
+    private static final String PAR_SAMPLE = "sample";
+
+    /**
+     * The number of strata of the sample. Defaults to 1, that is, simple random
+     * sampling.
+     * 
+     * @config
+     */
+    private static final String PAR_STRATA = "strata";
+
+    /**
+     * The confidence level of the interval reported in sampling mode. Defaults
+     * to 0.95.
+     * 
+     * @config
+     */
+    private static final String PAR_CONFIDENCE = "confidence";
+
+    /**
+     * If defined, the statistics are updated incrementally. Not defined by
+     * default.
+     * 
+     * @config
+     */
+    private static final String PAR_INCREMENTAL = "incremental";
+
     // ///////////////////////////////////////////////////////////////////////
     // Fields
     // ///////////////////////////////////////////////////////////////////////
@@ -59,6 +101,21 @@ public class QuotaObserver implements Control {
     /** Protocol identifier, obtained from config property {@link #PAR_PROT}. */
     private final int pid;
 
+    /** The sample, if {@link #PAR_SAMPLE} is defined. */
+    private final LoadSample sample;
+
+    /**
+     * The statistics updated incrementally, if {@link #PAR_INCREMENTAL} is
+     * defined.
+     */
+    private final LoadTally tally;
+
+    /**
+     * The value of {@link Network#getModCount} when the tally was last filled
+     * by reading the network.
+     */
+    private long scanned;
+
     // ///////////////////////////////////////////////////////////////////////
     // Constructor
     // ///////////////////////////////////////////////////////////////////////
@@ -73,6 +130,30 @@ public class QuotaObserver implements Control {
     public QuotaObserver(String name) {
         this.name = name;
         pid = Configuration.getPid(name + "." + PAR_PROT);
+        if (Configuration.contains(name + "." + PAR_SAMPLE)) {
+            sample = new LoadSample(Configuration.getInt(name + "."
+                    + PAR_SAMPLE), Configuration.getInt(name + "."
+                    + PAR_STRATA, 1), Configuration.getDouble(name + "."
+                    + PAR_CONFIDENCE, 0.95), CommonState.r.getLastSeed()
+                    + name.hashCode()) {
+                double value(Node node) {
+                    return ((BasicBalance) node.getProtocol(pid)).quota;
+                }
+            };
+        } else {
+            sample = null;
+        }
+        if (Configuration.contains(name + "." + PAR_INCREMENTAL)) {
+            if (!(Network.prototype.getProtocol(pid) instanceof BasicBalance))
+                throw new IllegalParameterException(name + "."
+                        + PAR_INCREMENTAL, "The protocol is not a BasicBalance");
+            if (sample != null)
+                throw new IllegalParameterException(name, PAR_SAMPLE + " and "
+                        + PAR_INCREMENTAL + " cannot be both defined");
+            tally = new LoadTally();
+        } else {
+            tally = null;
+        }
     }
 
     // ///////////////////////////////////////////////////////////////////////
@@ -81,6 +162,22 @@ public class QuotaObserver implements Control {
 
     // Comment inherited from interface
     public boolean execute() {
+        if (sample != null) {
+            sample.take();
+            System.out.println(name + ": " + CommonState.getTime() + " "
+                    + sample.min + " " + sample.max + " " + sample.n + " "
+                    + sample.average + " " + sample.var + " "
+                    + sample.averageError);
+            return false;
+        }
+        if (tally != null) {
+            if (!tally.isValid() || scanned != Network.getModCount())
+                scan();
+            System.out.println(name + ": " + CommonState.getTime() + " "
+                    + tally);
+            return false;
+        }
+
         IncrementalStats stats = new IncrementalStats();
         long time = peersim.core.CommonState.getTime();
 
@@ -95,4 +192,24 @@ public class QuotaObserver implements Control {
         return false;
     }
 
+    /**
+     * Reads the quota of all the nodes into the tally, and registers it with
+     * the protocols.
+     */
+    private void scan() {
+        tally.reset();
+        scanned = Network.getModCount();
+        final int len = Network.size();
+        for (int i = 0; i < len; i++) {
+            BasicBalance protocol = (BasicBalance) Network.get(i).getProtocol(
+                    pid);
+            if (protocol.quotaTally != null && protocol.quotaTally != tally)
+                throw new IllegalParameterException(name + "."
+                        + PAR_INCREMENTAL, "Another observer already updates "
+                        + "the statistics of the protocol incrementally");
+            protocol.quotaTally = tally;
+            tally.add(protocol.quota);
+        }
+    }
+
 }
@@ -26,21 +26,26 @@ import peersim.core.*;
  * This class represents the information stored by a node in the simplified
  * newscast system (i.e., used just as a topology manager)
  */
-public class SimpleNewscast implements CDProtocol, Linkable
+public class SimpleNewscast implements CDProtocol, Linkable, Sweepable
 {
 
+private static final long serialVersionUID = 1L;
+
 // =============== static fields =======================================
 // =====================================================================
 
-// We are using static temporary arrays to avoid garbage collection
-// of them. these are used by all SimpleNewscast protocols included
-// in the protocol array so its size is the maximum of the cache sizes
-
-/** Temp array for merging. Its size is the same as the cache size. */
-private static Node[] tn;
+// We are using temporary arrays to avoid garbage collection of them.
+// They are shared by all SimpleNewscast protocols of the same thread,
+// so their size is the maximum of the cache sizes.
 
-/** Temp array for merging. Its size is the same as the cache size. */
-private static int[] ts;
+/** The temporary arrays of the merges of each thread */
+private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>()
+{
+	protected Buffers initialValue()
+	{
+		return new Buffers();
+	}
+};
 
 /**
  * Cache size.
@@ -57,6 +62,12 @@ private Node[] cache;
 /** Time stamps currently in the cache */
 private int[] tstamps;
 
+/**
+ * True if {@link #cache} and {@link #tstamps} may be shared with other
+ * protocols, see {@link #clone}
+ */
+private boolean shared;
+
 // ====================== initialization ===============================
 // =====================================================================
 
@@ -64,33 +75,46 @@ public SimpleNewscast(String n)
 {
 
 	final int cachesize = Configuration.getInt(n + "." + PAR_CACHE);
-	if (SimpleNewscast.tn == null || SimpleNewscast.tn.length < cachesize) {
-		SimpleNewscast.tn = new Node[cachesize];
-		SimpleNewscast.ts = new int[cachesize];
-	}
-
 	cache = new Node[cachesize];
 	tstamps = new int[cachesize];
+	shared = true;
 }
 
 // ---------------------------------------------------------------------
 
+/**
+ * Returns a clone that shares the cache with this protocol until either of
+ * them changes it (copy on write), as in {@link IdleProtocol#clone}.
+ */
 public Object clone()
 {
 
 	SimpleNewscast sn = null;
 	try { sn = (SimpleNewscast) super.clone(); }
 	catch( CloneNotSupportedException e ) {} // never happens
-	sn.cache = new Node[cache.length];
-	sn.tstamps = new int[tstamps.length];
-	System.arraycopy(cache, 0, sn.cache, 0, cache.length);
-	System.arraycopy(tstamps, 0, sn.tstamps, 0, tstamps.length);
+	if (!shared) shared = true;
+	sn.shared = true;
 	return sn;
 }
 
 // ====================== helper methods ==============================
 // ====================================================================
 
+/**
+ * Copies the cache if it may be shared with other protocols, so that it can
+ * be changed.
+ */
+private void unshare()
+{
+	if (!shared)
+		return;
+	cache = cache.clone();
+	tstamps = tstamps.clone();
+	shared = false;
+}
+
+// --------------------------------------------------------------------
+
 /**
  * Returns a peer node which is accessible (has ok fail state). This
  * implementation starts with a random node. If that is not reachable,
@@ -128,28 +152,35 @@ private Node getPeer()
 
 /**
  * Merge the content of two nodes and adds a new version of the identifier.
- * The result is in the static temporary arrays. The first element is not
- * defined, it is reserved for the freshest new updates so it will be
- * different for peer and this. The elements of the static temporary arrays
- * will not contain neither peerNode nor thisNode.
+ * The result is in the temporary arrays of the given buffers. The first
+ * element is not defined, it is reserved for the freshest new updates so it
+ * will be different for peer and this. The elements of the temporary arrays
+ * will not contain neither peerNode nor thisNode. The nodes already copied
+ * are kept in a hash set, so the merge takes time linear in the cache size.
  * @param thisNode
  *          the node that hosts this newscast protocol instance (process)
  * @param peer
  *          The peer with which we perform cache exchange
  * @param peerNode
  *          the node that hosts the peer newscast protocol instance
+ * @param b
+ *          the temporary arrays of the current thread
  */
-private void merge(Node thisNode, SimpleNewscast peer, Node peerNode )
+private void merge(Node thisNode, SimpleNewscast peer, Node peerNode,
+		Buffers b)
 {
 	int i1 = 0; /* Index first cache */
 	int i2 = 0; /* Index second cache */
 	boolean first;
 	boolean lastTieWinner = CommonState.r.nextBoolean();
 	int i = 1; // Index new cache. first element set in the end
-	// SimpleNewscast.tn[0] is always null. it's never written anywhere
+	// b.tn[0] is never written here
 	final int d1 = degree();
 	final int d2 = peer.degree();
 	// cachesize is cache.length
+	b.clear(cache.length);
+	final Node[] tn = b.tn;
+	final int[] ts = b.ts;
 
 	// merging two arrays
 	while (i < cache.length && i1 < d1 && i2 < d2) {
@@ -160,17 +191,16 @@ private void merge(Node thisNode, SimpleNewscast peer, Node peerNode )
 		}
 
 		if (first) {
-			if (cache[i1] != peerNode && !SimpleNewscast.contains(i, cache[i1])) {
-				SimpleNewscast.tn[i] = cache[i1];
-				SimpleNewscast.ts[i] = tstamps[i1];
+			if (cache[i1] != peerNode && b.add(cache[i1])) {
+				tn[i] = cache[i1];
+				ts[i] = tstamps[i1];
 				i++;
 			}
 			i1++;
 		} else {
-			if (peer.cache[i2] != thisNode
-					&& !SimpleNewscast.contains(i, peer.cache[i2])) {
-				SimpleNewscast.tn[i] = peer.cache[i2];
-				SimpleNewscast.ts[i] = peer.tstamps[i2];
+			if (peer.cache[i2] != thisNode && b.add(peer.cache[i2])) {
+				tn[i] = peer.cache[i2];
+				ts[i] = peer.tstamps[i2];
 				i++;
 			}
 			i2++;
@@ -184,18 +214,17 @@ private void merge(Node thisNode, SimpleNewscast peer, Node peerNode )
 		// only one of the for cycles will be entered
 
 		for (; i1 < d1 && i < cache.length; ++i1) {
-			if (cache[i1] != peerNode && !SimpleNewscast.contains(i, cache[i1])) {
-				SimpleNewscast.tn[i] = cache[i1];
-				SimpleNewscast.ts[i] = tstamps[i1];
+			if (cache[i1] != peerNode && b.add(cache[i1])) {
+				tn[i] = cache[i1];
+				ts[i] = tstamps[i1];
 				i++;
 			}
 		}
 
 		for (; i2 < d2 && i < cache.length; ++i2) {
-			if (peer.cache[i2] != thisNode
-					&& !SimpleNewscast.contains(i, peer.cache[i2])) {
-				SimpleNewscast.tn[i] = peer.cache[i2];
-				SimpleNewscast.ts[i] = peer.tstamps[i2];
+			if (peer.cache[i2] != thisNode && b.add(peer.cache[i2])) {
+				tn[i] = peer.cache[i2];
+				ts[i] = peer.tstamps[i2];
 				i++;
 			}
 		}
@@ -205,22 +234,11 @@ private void merge(Node thisNode, SimpleNewscast peer, Node peerNode )
 	// fill in the rest with nulls
 	if (i < cache.length) {
 		for (; i < cache.length; ++i) {
-			SimpleNewscast.tn[i] = null;
+			tn[i] = null;
 		}
 	}
 }
 
-// --------------------------------------------------------------------
-
-private static boolean contains(int size, Node peer)
-{
-	for (int i = 0; i < size; i++) {
-		if (SimpleNewscast.tn[i] == peer)
-			return true;
-	}
-	return false;
-}
-
 // ====================== Linkable implementation =====================
 // ====================================================================
 
@@ -258,6 +276,7 @@ public boolean addNeighbor(Node node)
 	}
 
 	if (i < cache.length) {
+		unshare();
 		if (i > 0 && tstamps[i - 1] < CommonState.getIntTime()) {
 			// we need to insert to the first position
 			for (int j = cache.length - 2; j >= 0; --j) {
@@ -292,10 +311,37 @@ public boolean contains(Node n)
 
 // --------------------------------------------------------------------
 
+/**
+ * Removes the dead nodes from the cache, keeping the order (and so the
+ * freshness) of the other entries.
+ */
+public int sweep()
+{
+	if (cache == null)
+		return 0;
+	final int d = degree();
+	if (d > 0)
+		unshare();
+	int j = 0;
+	for (int i = 0; i < d; i++) {
+		if (cache[i].getFailState() != Fallible.DEAD) {
+			cache[j] = cache[i];
+			tstamps[j] = tstamps[i];
+			j++;
+		}
+	}
+	for (int i = j; i < d; i++)
+		cache[i] = null;
+	return d - j;
+}
+
+// --------------------------------------------------------------------
+
 public void onKill()
 {
 	cache = null;
 	tstamps = null;
+	shared = false;
 }
 
 // ===================== CDProtocol implementations ===================
@@ -310,13 +356,16 @@ public void nextCycle(Node n, int protocolID)
 	}
 
 	SimpleNewscast peer = (SimpleNewscast) (peerNode.getProtocol(protocolID));
-	merge(n, peer, peerNode);
+	Buffers b = buffers.get();
+	merge(n, peer, peerNode, b);
 
 	// set new cache in this and peer
-	System.arraycopy(SimpleNewscast.tn, 0, cache, 0, cache.length);
-	System.arraycopy(SimpleNewscast.ts, 0, tstamps, 0, tstamps.length);
-	System.arraycopy(SimpleNewscast.tn, 0, peer.cache, 0, cache.length);
-	System.arraycopy(SimpleNewscast.ts, 0, peer.tstamps, 0, tstamps.length);
+	unshare();
+	peer.unshare();
+	System.arraycopy(b.tn, 0, cache, 0, cache.length);
+	System.arraycopy(b.ts, 0, tstamps, 0, tstamps.length);
+	System.arraycopy(b.tn, 0, peer.cache, 0, cache.length);
+	System.arraycopy(b.ts, 0, peer.tstamps, 0, tstamps.length);
 
 	// set first element
 	tstamps[0] = peer.tstamps[0] = CommonState.getIntTime();
@@ -339,4 +388,73 @@ public String toString()
 	return sb.toString();
 }
 
+// ===================== merge buffers ================================
+// ====================================================================
+
+/**
+ * The temporary arrays of a merge, and a set of the nodes already in the
+ * merged cache. The set is an open addressing hash table of node IDs;
+ * entries are valid only if their mark equals the current generation, so
+ * it is cleared in constant time.
+ */
+private static class Buffers
+{
+
+/** The merged cache */
+Node[] tn = new Node[0];
+
+/** The time stamps of the merged cache */
+int[] ts = new int[0];
+
+/** The IDs in the set */
+private long[] keys;
+
+/** The generation in which each entry was set */
+private int[] marks;
+
+private int generation = 0;
+
+/**
+ * Empties the set and makes sure that the arrays can hold the given number
+ * of nodes.
+ */
+void clear(int size)
+{
+	if (tn.length < size) {
+		tn = new Node[size];
+		ts = new int[size];
+		int capacity = 4;
+		while (capacity < 2 * size)
+			capacity *= 2;
+		keys = new long[capacity];
+		marks = new int[capacity];
+		generation = 0;
+	}
+	if (++generation == 0) {
+		java.util.Arrays.fill(marks, 0);
+		generation = 1;
+	}
+}
+
+/**
+ * Adds the given node to the set.
+ * @return false if the node was already in the set
+ */
+boolean add(Node node)
+{
+	final long id = node.getID();
+	final int mask = keys.length - 1;
+	int h = (int) ((id * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+	while (marks[h] == generation) {
+		if (keys[h] == id)
+			return false;
+		h = (h + 1) & mask;
+	}
+	marks[h] = generation;
+	keys[h] = id;
+	return true;
+}
+
+}
+
 }
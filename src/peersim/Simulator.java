@@ -24,6 +24,7 @@ import peersim.cdsim.*;
 import peersim.config.*;
 import peersim.core.*;
 import peersim.edsim.*;
+import peersim.reports.OutputSink;
 
 
 /**
@@ -169,30 +170,36 @@ public static void main(String[] args)
 	
 	try {
 
-		for(int k=0; k<exps; ++k)
-		{
-			if( k>0 )
+		// the records written so far are saved even if an experiment fails
+		try {
+			for(int k=0; k<exps; ++k)
 			{
-				long seed = CommonState.r.nextLong();
-				CommonState.initializeRandom(seed);
-			}
-			System.err.print("Simulator: starting experiment "+k);
-			System.err.println(" invoking "+simName[SIMID]);
-			System.err.println("Random seed: "+
-				CommonState.r.getLastSeed());
-			System.out.println("\n\n");
+				if( k>0 )
+				{
+					long seed = CommonState.r.nextLong();
+					CommonState.initializeRandom(seed);
+				}
+				System.err.print("Simulator: starting experiment "+k);
+				System.err.println(" invoking "+simName[SIMID]);
+				System.err.println("Random seed: "+
+					CommonState.r.getLastSeed());
+				System.out.println("\n\n");
+				OutputSink.startExperiment(k);
 			
-			// XXX could be done through reflection, but
-			// this is easier to read.
-			switch(SIMID)
-			{
-			case CDSIM:
-				CDSimulator.nextExperiment();
-				break;
-			case EDSIM:
-				EDSimulator.nextExperiment();
-				break;
+				// XXX could be done through reflection, but
+				// this is easier to read.
+				switch(SIMID)
+				{
+				case CDSIM:
+					CDSimulator.nextExperiment();
+					break;
+				case EDSIM:
+					EDSimulator.nextExperiment();
+					break;
+				}
 			}
+		} finally {
+			OutputSink.close();
 		}
 	
 	} catch (MissingParameterException e) {
@@ -127,7 +127,10 @@ private static void runInitializers()
 	for (int i = 0; i < inits.length; ++i) {
 		System.err.println("- Running initializer " + names[i] + ": "
 				+ inits[i].getClass());
-		((Control) inits[i]).execute();
+		if (inits[i] instanceof ParallelInitializer && Network.getThreads() > 1)
+			Network.initialize((ParallelInitializer) inits[i]);
+		else
+			((Control) inits[i]).execute();
 	}
 }
 
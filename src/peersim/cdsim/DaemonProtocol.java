@@ -30,6 +30,8 @@ import peersim.core.Control;
 */
 public class DaemonProtocol implements CDProtocol {
 
+private static final long serialVersionUID = 1L;
+
 
 // ========================= fields =================================
 // ==================================================================
@@ -101,6 +101,8 @@ public boolean execute() {
 
 	final int cycle=CDState.getCycle();
 	if( shuffle ) rperm.reset( Network.size() );
+	// if some nodes are down, skip them using the index of live nodes
+	final boolean sparse = Network.liveSize() < Network.size();
 	for(int j=0; j<Network.size(); ++j)
 	{
 		Node node = null;
@@ -109,7 +111,10 @@ public boolean execute() {
 		else if( shuffle )
 			node = Network.get(rperm.next());
 		else
+		{
+			if( sparse && (j = Network.nextLive(j)) < 0 ) break;
 			node = Network.get(j);
+		}
 		if( !node.isUp() ) continue; 
 		CDState.setNode(node);
 		CDState.setCycleT(j);
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.config;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Typed tables of configuration information that has already been resolved
+ * by {@link ConfigContainer}: the values of numeric properties (after
+ * expression evaluation), the fully qualified names of the classes
+ * referenced in the configuration and the <code>(String)</code>
+ * constructors of these classes.
+ * <p>
+ * Class names and constructors are always memorized the first time they are
+ * resolved, so that {@link Configuration#getInstance} does not repeat the
+ * lookup for every component or node. If parameter
+ * {@value peersim.config.Configuration#PAR_CACHE} is defined, the whole
+ * configuration is compiled eagerly and the tables are saved in the given
+ * file. Subsequent launches with an identical configuration and classpath
+ * load the tables from that file, avoiding the evaluation of expressions
+ * and the classpath scan performed by {@link ClassFinder}.
+ * <p>
+ * The tables can be read and updated concurrently, since the configuration
+ * may be read by initializers and protocols run by several threads.
+ */
+class CompiledConfig implements Serializable
+{
+
+// ========================= fields =================================
+// ==================================================================
+
+private static final long serialVersionUID = 1L;
+
+/**
+ * Digest of the configuration and classpath this snapshot was compiled
+ * from. A cached snapshot is used only if this matches.
+ */
+private final String fingerprint;
+
+/**
+ * Associates the class names as they appear in the configuration with
+ * the fully qualified class names they resolve to.
+ */
+private final ConcurrentHashMap<String, String> classNames =
+	new ConcurrentHashMap<String, String>();
+
+/** Associates property names with their evaluated numeric values. */
+private final ConcurrentHashMap<String, Number> values =
+	new ConcurrentHashMap<String, Number>();
+
+/** Class objects resolved from {@link #classNames} during this run. */
+private transient Map<String, Class<?>> classes =
+	new ConcurrentHashMap<String, Class<?>>();
+
+/** The <code>(String)</code> constructors resolved during this run. */
+private transient Map<Class<?>, Constructor<?>> constructors =
+	new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+// ====================== initialization ============================
+// ==================================================================
+
+/**
+ * Creates empty tables for a configuration with the given fingerprint.
+ */
+CompiledConfig(String fingerprint)
+{
+	this.fingerprint = fingerprint;
+}
+
+// ====================== methods ===================================
+// ==================================================================
+
+/**
+ * Returns the fingerprint of the configuration these tables belong to.
+ */
+String getFingerprint()
+{
+	return fingerprint;
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Returns the precomputed value of the given property, or null if it is
+ * not known.
+ */
+Number getValue(String property)
+{
+	return values.get(property);
+}
+
+// ------------------------------------------------------------------
+
+/** Stores the evaluated value of the given property. */
+void putValue(String property, Number value)
+{
+	values.put(property, value);
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Forgets all the stored values. Called when the configuration has been
+ * modified, since any value might depend on the modified properties.
+ */
+void clearValues()
+{
+	values.clear();
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Returns the class the given class name resolves to, or null if it has
+ * not been resolved yet.
+ */
+Class<?> getClass(String classname)
+{
+	Class<?> c = classes.get(classname);
+	if (c == null) {
+		String fullname = classNames.get(classname);
+		if (fullname == null)
+			return null;
+		try {
+			c = Class.forName(fullname);
+		} catch (ClassNotFoundException e) {
+			// stale entry, let the caller resolve it again
+			classNames.remove(classname);
+			return null;
+		}
+		classes.put(classname, c);
+	}
+	return c;
+}
+
+// ------------------------------------------------------------------
+
+/** Stores the class the given class name resolves to. */
+void putClass(String classname, Class<?> c)
+{
+	classes.put(classname, c);
+	classNames.put(classname, c.getName());
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Returns the constructor of the given class that takes a single String
+ * argument, looking it up only the first time.
+ * @throws NoSuchMethodException if there is no such constructor
+ */
+Constructor<?> getConstructor(Class<?> c) throws NoSuchMethodException
+{
+	Constructor<?> cons = constructors.get(c);
+	if (cons == null) {
+		cons = c.getConstructor(String.class);
+		constructors.put(c, cons);
+	}
+	return cons;
+}
+
+// ------------------------------------------------------------------
+
+/** Creates the tables of this run, which are not serialized. */
+private void readObject(ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+{
+	in.defaultReadObject();
+	classes = new ConcurrentHashMap<String, Class<?>>();
+	constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Saves the tables in the given file.
+ */
+void save(String filename) throws IOException
+{
+	ObjectOutputStream out = new ObjectOutputStream(
+			new BufferedOutputStream(new FileOutputStream(filename)));
+	try {
+		out.writeObject(this);
+	} finally {
+		out.close();
+	}
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Loads the tables saved in the given file. Returns null if the file
+ * does not exist, cannot be read, or was compiled from a different
+ * configuration than the one identified by <code>fingerprint</code>.
+ */
+static CompiledConfig load(String filename, String fingerprint)
+{
+	File file = new File(filename);
+	if (!file.exists())
+		return null;
+	try {
+		ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			CompiledConfig cc = (CompiledConfig) in.readObject();
+			return fingerprint.equals(cc.fingerprint) ? cc : null;
+		} finally {
+			in.close();
+		}
+	} catch (Exception e) {
+		System.err.println("Configuration: unable to read " + filename
+				+ ": " + e);
+		return null;
+	}
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Computes a digest of the given properties and of the current classpath.
+ * The digest does not depend on the order of the properties.
+ */
+static String fingerprint(Properties config)
+{
+	Map<String, String> sorted = new TreeMap<String, String>();
+	Enumeration<?> e = config.propertyNames();
+	while (e.hasMoreElements()) {
+		String name = (String) e.nextElement();
+		sorted.put(name, config.getProperty(name));
+	}
+	StringBuffer buffer = new StringBuffer();
+	buffer.append(System.getProperty("java.class.path"));
+	for (Map.Entry<String, String> entry : sorted.entrySet()) {
+		buffer.append('\n').append(entry.getKey());
+		buffer.append('=').append(entry.getValue());
+	}
+	try {
+		MessageDigest md = MessageDigest.getInstance("SHA-1");
+		byte[] digest = md.digest(buffer.toString().getBytes("UTF-8"));
+		StringBuffer hex = new StringBuffer();
+		for (int i = 0; i < digest.length; i++)
+			hex.append(Integer.toHexString((digest[i] & 0xff) | 0x100), 1, 3);
+		return hex.toString();
+	} catch (Exception ex) {
+		return Integer.toHexString(buffer.toString().hashCode());
+	}
+}
+
+}
@@ -18,6 +18,7 @@
 
 package peersim.config;
 
+import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
 import org.lsmp.djep.groupJep.*;
@@ -55,6 +56,48 @@ private Properties config;
  */
 private Map<String, Integer> protocols;
 
+/**
+ * The protocol names indexed by numeric protocol identifier. The names are
+ * understood without prefix.
+ */
+private String[] protocolNames;
+
+/**
+ * The tables of values, classes and constructors that have already been
+ * resolved.
+ */
+private CompiledConfig compiled;
+
+/**
+ * True while the whole configuration is compiled; in this phase
+ * evaluation errors are not reported since many properties are not
+ * expressions at all.
+ */
+private boolean compiling = false;
+
+/**
+ * Parsed expressions, associated with the expression string they were
+ * parsed from. The same parser is reused each time a property with that
+ * value is evaluated, only the values of its variables are updated. Since
+ * parsers hold the values of the variables, each thread has its own
+ * parsers: the configuration can be read by initializers and protocols
+ * run concurrently (see {@link peersim.core.Network#getThreads}).
+ */
+private final ThreadLocal<Map<String, GroupJep>> expressions =
+	new ThreadLocal<Map<String, GroupJep>>()
+{
+	protected Map<String, GroupJep> initialValue()
+	{
+		return new HashMap<String, GroupJep>();
+	}
+};
+
+/**
+ * The version of the configuration the memorized values were computed
+ * from; see {@link ConfigProperties#getVersion}.
+ */
+private volatile long version;
+
 /**
  * The maximum depth that can be reached when analyzing expressions. This
  * value can be substituted by setting the configuration parameter
@@ -78,13 +121,18 @@ public ConfigContainer(Properties config, boolean check)
 {
 	this.config = config;
 	this.check = check;
+	compiled = new CompiledConfig(null);
+	if (config instanceof ConfigProperties)
+		version = ((ConfigProperties) config).getVersion();
 	maxdepth = getInt(Configuration.PAR_MAXDEPTH, Configuration.DEFAULT_MAXDEPTH);
 
 	// initialize protocol id-s
 	protocols = new HashMap<String, Integer>();
 	String[] prots = getNames(Configuration.PAR_PROT);// they're returned in correct order
+	protocolNames = new String[prots.length];
 	for (int i = 0; i < prots.length; ++i) {
-		protocols.put(prots[i].substring(Configuration.PAR_PROT.length() + 1), Integer.valueOf(i));
+		protocolNames[i] = prots[i].substring(Configuration.PAR_PROT.length() + 1);
+		protocols.put(protocolNames[i], Integer.valueOf(i));
 	}
 	String debug = config.getProperty(Configuration.PAR_DEBUG);
 	if (Configuration.DEBUG_EXTENDED.equals(debug))
@@ -108,6 +156,70 @@ public ConfigContainer(Properties config, boolean check)
 	} else {
 		debugLevel = DEBUG_NO;
 	}
+
+	String cache = config.getProperty(Configuration.PAR_CACHE);
+	if (cache != null)
+		loadCompiled(cache.trim());
+}
+
+// -------------------------------------------------------------------
+
+/**
+ * Loads the compiled tables from the given file if they were compiled from
+ * the current configuration. Otherwise compiles the configuration and saves
+ * the tables to the file.
+ */
+private void loadCompiled(String filename)
+{
+	String fingerprint = CompiledConfig.fingerprint(config);
+	CompiledConfig cc = CompiledConfig.load(filename, fingerprint);
+	if (cc != null) {
+		compiled = cc;
+		return;
+	}
+	compiled = new CompiledConfig(fingerprint);
+	compile();
+	try {
+		compiled.save(filename);
+	} catch (IOException e) {
+		System.err.println("Configuration: unable to write " + filename
+				+ ": " + e);
+	}
+}
+
+// -------------------------------------------------------------------
+
+/**
+ * Resolves all the properties of the configuration that can be resolved:
+ * numeric values are evaluated and class names are looked up, and the
+ * results are stored in {@link #compiled}. Properties that are neither
+ * numbers nor class names are silently ignored.
+ */
+private void compile()
+{
+	compiling = true;
+	Enumeration<?> e = config.propertyNames();
+	while (e.hasMoreElements()) {
+		String name = (String) e.nextElement();
+		String value = config.getProperty(name).trim();
+		try {
+			Number n = getVal(name, name, 0);
+			if (n != null) {
+				compiled.putValue(name, n);
+				continue;
+			}
+		} catch (RuntimeException ex) {
+			// not a numeric property
+		}
+		if (value.matches("[\\p{Alpha}_$][\\w$]*(\\.[\\p{Alpha}_$][\\w$]*)*")) {
+			try {
+				getClazz(name);
+			} catch (RuntimeException ex) {
+				// not a class name
+			}
+		}
+	}
+	compiling = false;
 }
 
 // =================== static public methods =========================
@@ -119,7 +231,7 @@ public ConfigContainer(Properties config, boolean check)
 public boolean contains(String name)
 {
 	boolean ret = config.containsKey(name);
-	debug(name, "" + ret);
+	debug(name, ret);
 	return ret;
 }
 
@@ -181,7 +293,7 @@ private boolean getBool(String name)
 				"Blank value is not accepted when parsing Boolean.");
 	}
 	boolean ret = Boolean.valueOf(config.getProperty(name));
-	debug(name, "" + ret);
+	debug(name, ret);
 	return ret;
 }
 
@@ -199,7 +311,7 @@ public int getInt(String name, int def)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.intValue();
 	} catch (RuntimeException e) {
 		manageDefault(name, def, e);
@@ -219,7 +331,7 @@ public int getInt(String name)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.intValue();
 	} catch (RuntimeException e) {
 		manageException(name, e);
@@ -241,7 +353,7 @@ public long getLong(String name, long def)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.longValue();
 	} catch (RuntimeException e) {
 		manageDefault(name, def, e);
@@ -261,7 +373,7 @@ public long getLong(String name)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.longValue();
 	} catch (RuntimeException e) {
 		manageException(name, e);
@@ -283,7 +395,7 @@ public double getDouble(String name, double def)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.doubleValue();
 	} catch (RuntimeException e) {
 		manageDefault(name, def, e);
@@ -303,7 +415,7 @@ public double getDouble(String name)
 {
 	try {
 		Number ret = getVal(name, name, 0);
-		debug(name, "" + ret);
+		debug(name, ret);
 		return ret.doubleValue();
 	} catch (RuntimeException e) {
 		manageException(name, e);
@@ -332,6 +444,11 @@ private Number getVal(String initial, String property, int depth)
 				maxdepth);
 	}
 
+	checkVersion();
+	Number n = compiled.getValue(property);
+	if (n != null)
+		return n;
+
 	String s = config.getProperty(property);
 	if (s == null || s.equals("")) {
 		throw new MissingParameterException(property,
@@ -339,23 +456,55 @@ private Number getVal(String initial, String property, int depth)
 //						+ "\nPossibly incorrect property: " + getSimilarProperty(property));
 	}
 
-	GroupJep jep = new GroupJep(new Operators());
-	jep.setAllowUndeclared(true);
+	Map<String, GroupJep> parsers = expressions.get();
+	GroupJep jep = parsers.get(s);
+	if (jep == null) {
+		jep = new GroupJep(new Operators());
+		jep.setAllowUndeclared(true);
+		jep.parseExpression(s);
+		if (!jep.hasError())
+			parsers.put(s, jep);
+	}
 
-	jep.parseExpression(s);
 	String[] symbols = getSymbols(jep);
 	for (int i = 0; i < symbols.length; i++) {
 		Object d = getVal(initial, symbols[i], depth + 1);
 		jep.addVariable(symbols[i], d);
 	}
 	Object ret = jep.getValueAsObject();
-	if (jep.hasError())
+	if (jep.hasError()) {
+		parsers.remove(s);
+		if (compiling)
+			throw new IllegalParameterException(property, jep.getErrorInfo());
 		System.err.println(jep.getErrorInfo());
+	} else if (ret != null) {
+		compiled.putValue(property, (Number) ret);
+	}
 	return (Number) ret;
 }
 
 // -------------------------------------------------------------------
 
+/**
+ * Forgets the memorized values of numeric properties if the underlying
+ * configuration has been modified since they were computed. Modifications
+ * can be detected only if the configuration is a {@link ConfigProperties}.
+ * The parsed expressions remain valid, since they are associated with the
+ * expression string and not with the property name.
+ */
+private void checkVersion()
+{
+	if (config instanceof ConfigProperties) {
+		long v = ((ConfigProperties) config).getVersion();
+		if (v != version) {
+			compiled.clearValues();
+			version = v;
+		}
+	}
+}
+
+// -------------------------------------------------------------------
+
 /**
  * Returns an array of string, containing the symbols contained in the
  * expression parsed by the specified JEP parser.
@@ -423,7 +572,7 @@ private String getStr(String name)
 		throw new MissingParameterException(name);
 //				"\nPossibly incorrect property: " + getSimilarProperty(name));
 	}
-	debug(name, "" + result);
+	debug(name, result);
 
 	return result.trim();
 }
@@ -500,9 +649,6 @@ public int lookupPid(String protname)
 
 /**
  * Returns the name of a protocol that has the given identifier.
- * <p>
- * Note that this is not a constant time operation in the number of
- * protocols, although typically there are very few protocols defined.
  * 
  * @param pid
  *          numeric protocol identifier.
@@ -511,16 +657,9 @@ public int lookupPid(String protname)
  */
 public String lookupPid(int pid)
 {
-
-	if (!protocols.containsValue(pid))
+	if (pid < 0 || pid >= protocolNames.length)
 		return null;
-	for (Map.Entry<String, Integer> i : protocols.entrySet()) {
-		if (i.getValue().intValue() == pid)
-			return i.getKey();
-	}
-
-	// never reached but java needs it...
-	return null;
+	return protocolNames[pid];
 }
 
 // -------------------------------------------------------------------
@@ -552,11 +691,13 @@ private Class getClazz(String name)
 	}
 	debug(name, classname);
 
-	Class c = null;
+	Class c = compiled.getClass(classname);
+	if (c != null)
+		return c;
 
 	try {
 		// Maybe classname is just a fully-qualified name
-		c = Class.forName(classname);
+		c = forName(classname);
 	} catch (ClassNotFoundException e) {
 	}
 	if (c == null) {
@@ -564,7 +705,7 @@ private Class getClazz(String name)
 		String fullname = ClassFinder.getQualifiedName(classname);
 		if (fullname != null) {
 			try {
-				c = Class.forName(fullname);
+				c = forName(fullname);
 			} catch (ClassNotFoundException e) {
 			}
 		}
@@ -606,11 +747,26 @@ private Class getClazz(String name)
 		throw new IllegalParameterException(name, "Class "
 				+ classname + " not found");
 	}
+	compiled.putClass(classname, c);
 	return c;
 }
 
 // -------------------------------------------------------------------
 
+/**
+ * Loads the class with the given fully qualified name. While the
+ * configuration is being compiled the class is not initialized, since
+ * static initializers may read the configuration which is not yet set.
+ */
+private Class forName(String classname) throws ClassNotFoundException
+{
+	if (compiling)
+		return Class.forName(classname, false, getClass().getClassLoader());
+	return Class.forName(classname);
+}
+
+// -------------------------------------------------------------------
+
 /**
  * Reads given configuration property. If not found, returns the default
  * value.
@@ -667,8 +823,7 @@ private Object getInst(String name)
 	final String classname = c.getSimpleName();
 
 	try {
-		Class pars[] = {String.class};
-		Constructor cons = c.getConstructor(pars);
+		Constructor cons = compiled.getConstructor(c);
 		Object objpars[] = {name};
 		return cons.newInstance(objpars);
 	} catch (NoSuchMethodException e) {
@@ -841,9 +996,9 @@ private String[] order(String[] names, String type)
  * 
  * @param name
  */
-private void debug(String name, String result)
+private void debug(String name, Object result)
 {
-	if (debugLevel == DEBUG_NO)
+	if (debugLevel == DEBUG_NO || compiling)
 		return;
 	StringBuffer buffer = new StringBuffer();
 	buffer.append("DEBUG ");
@@ -1008,4 +1163,58 @@ private void manageException(String name, RuntimeException e)
 
 //-------------------------------------------------------------------
 
+// -------------------------------------------------------------------
+// Testing
+// -------------------------------------------------------------------
+
+/**
+ * Measures the cost of reading numeric properties defined by expressions.
+ * The reads of the same property are timed on a cold configuration, after
+ * invalidating the memorized values (so that only the parsed expressions
+ * are reused), and with memorized values. The optional argument is the
+ * number of reads, modelling e.g. a read per node.
+ */
+public static void main(String[] args)
+{
+	int reads = 1000000;
+	if (args.length > 0)
+		reads = Integer.parseInt(args[0]);
+
+	ConfigProperties p = new ConfigProperties();
+	p.setProperty("MAG", "6");
+	p.setProperty("SIZE", "10^MAG");
+	p.setProperty("CYCLE", "SIZE*100");
+	p.setProperty("A", "B+C");
+	p.setProperty("B", "D+E");
+	p.setProperty("C", "E+F");
+	p.setProperty("D", "1");
+	p.setProperty("E", "F");
+	p.setProperty("F", "2");
+	p.setProperty("protocol.avg.step", "CYCLE*A/(D+E)");
+	ConfigContainer cc = new ConfigContainer(p, false);
+	String name = "protocol.avg.step";
+
+	long time = System.nanoTime();
+	long sum = cc.getLong(name);
+	System.out.println("First read: " + (System.nanoTime() - time) / 1000
+			+ " us");
+
+	int invalidated = Math.max(1, reads / 100);
+	time = System.nanoTime();
+	for (int i = 0; i < invalidated; i++) {
+		p.setProperty("D", "1");
+		sum += cc.getLong(name);
+	}
+	System.out.println("Invalidated reads: "
+			+ (System.nanoTime() - time) / invalidated + " ns/read");
+
+	time = System.nanoTime();
+	for (int i = 0; i < reads; i++)
+		sum += cc.getLong(name);
+	System.out.println("Memorized reads: "
+			+ (System.nanoTime() - time) / reads + " ns/read");
+
+	System.out.println("Checksum: " + sum);
+}
+
 }
@@ -27,6 +27,16 @@ import java.io.*;
 */
 public class ConfigProperties extends Properties {
 
+// =========== Fields ================================================
+// ===================================================================
+
+/**
+* The number of modifications made to this object. It is used by
+* {@link ConfigContainer} to invalidate the values it has memorized
+* when a property is overridden.
+*/
+private long version = 0;
+
 
 // =========== Public Constructors ===================================
 // ===================================================================
@@ -146,6 +156,59 @@ public	ConfigProperties( String[] pars ) {
 // =========== Public methods ========================================
 // ===================================================================
 
+/**
+* Returns the number of modifications made to this object so far.
+* Any change of the stored properties increments this number.
+*/
+public long getVersion() { return version; }
+
+// -------------------------------------------------------------------
+
+/**
+* Calls super method and increments the modification counter.
+*/
+public synchronized Object put( Object key, Object value ) {
+
+	++version;
+	return super.put( key, value );
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Calls super method and increments the modification counter.
+*/
+public synchronized void putAll( java.util.Map<?,?> t ) {
+
+	++version;
+	super.putAll( t );
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Calls super method and increments the modification counter.
+*/
+public synchronized Object remove( Object key ) {
+
+	++version;
+	return super.remove( key );
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Calls super method and increments the modification counter.
+*/
+public synchronized void clear() {
+
+	++version;
+	super.clear();
+}
+
+// -------------------------------------------------------------------
+
+
 
 /**
 * Loads given file. Calls <code>Properties.load</code> with a file
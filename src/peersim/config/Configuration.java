@@ -171,10 +171,13 @@ import java.util.*;
  * example, 5.0/2 returns 2.5.
  * 
  * <p>
- * Expressions are parsed recursively. Note that no optimization is done,
- * so expression F is evaluated three times here (due to the fact that
- * appears twice in C and once in B). But since properties are read just
- * once at initialization, this is not a performance problem.
+ * Expressions are parsed recursively. Each expression string is parsed
+ * only once, and the value of each property is memorized after it has been
+ * evaluated, so expression F is evaluated only once here even though it
+ * appears twice in C and once in B. Properties that are read many times,
+ * for example by each node, are therefore evaluated only at the first
+ * read. If the configuration is a {@link ConfigProperties} and it is
+ * modified, the memorized values are discarded.
  * 
  * <p>
  * Finally, recursive definitions are not allowed (and without function
@@ -212,6 +215,15 @@ import java.util.*;
  * Each line printed by this debug feature is prefixed by the string
  * "DEBUG".
  * 
+ * <h3>Compiled configuration</h3>
+ * 
+ * Class names and constructors are resolved only once, the first time
+ * they are used. If property {@value #PAR_CACHE} is defined, the whole
+ * configuration is compiled when it is set: all the numeric properties are
+ * evaluated and all the class names are resolved. The results are saved
+ * in the file given by {@value #PAR_CACHE}, and they are loaded from there
+ * when the same configuration is run again with the same classpath.
+ * 
  * <h3>Use of brackets</h3>
  * 
  * For the sake of completeness, we mention it here that if this class is
@@ -261,6 +273,16 @@ static final String DEBUG_FULL = "full";
  */
 static final String PAR_MAXDEPTH = "expressions.maxdepth";
 
+/**
+ * If defined, the configuration is compiled once into tables of resolved
+ * numeric values and fully qualified class names, which are saved in the
+ * file given by this parameter. If the file already contains tables
+ * compiled from the same configuration and classpath, they are loaded
+ * instead, which speeds up launching the same configuration repeatedly.
+ * @config
+ */
+static final String PAR_CACHE = "cache.config";
+
 /**
  * Used to configure ordering of the components. Determines the ordering in
  * the array as returned by {@link #getNames}. See the general description
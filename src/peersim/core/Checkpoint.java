@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+import java.io.*;
+import java.util.zip.*;
+import peersim.util.ExtendedRandom;
+
+/**
+ * Saves and restores the state of the simulation, so that several
+ * experiments can start from the same state (e.g. a converged overlay)
+ * without repeating the initialization and the warm-up. The state
+ * consists of the current time, the random generator {@link CommonState#r}
+ * and the nodes of the {@link Network} with all their protocols; the
+ * event driven engine adds its event queue through
+ * {@link #writeObject} and {@link #readObject}.
+ * <p>
+ * The state is written using Java serialization, so all protocols (and the
+ * events in the queue) must be serializable. Static fields and components
+ * that are not protocols (e.g. controls) are not saved. If
+ * the file name ends with ".gz" the file is compressed.
+ * <p>
+ * Nodes that are referenced by other nodes (e.g. as neighbors) are not
+ * written recursively: only the nodes themselves are written first, and
+ * their protocols are written afterwards one after the other. This keeps
+ * the depth of serialization constant irrespective of the size of the
+ * network.
+ * @see peersim.dynamics.SaveCheckpoint
+ * @see peersim.dynamics.LoadCheckpoint
+ */
+public class Checkpoint
+{
+
+// ======================= constants ===============================
+// =================================================================
+
+/** Identifies checkpoint files */
+private static final String MAGIC = "PeerSim checkpoint";
+
+/** Version of the file format */
+private static final int VERSION = 1;
+
+/** Size of the I/O buffers */
+private static final int BUFSIZE = 1 << 16;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/** to prevent construction */
+private Checkpoint() {}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+ * Creates the given checkpoint file and writes its header.
+ */
+public static ObjectOutputStream openOutput(String filename)
+throws IOException
+{
+	OutputStream os = new FileOutputStream(filename);
+	if (filename.endsWith(".gz"))
+		os = new GZIPOutputStream(os, BUFSIZE);
+	ObjectOutputStream out = new ObjectOutputStream(
+			new BufferedOutputStream(os, BUFSIZE));
+	out.writeUTF(MAGIC);
+	out.writeInt(VERSION);
+	return out;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Opens the given checkpoint file and checks its header.
+ * @throws IOException if the file is not a checkpoint file of a
+ * supported version
+ */
+public static ObjectInputStream openInput(String filename)
+throws IOException
+{
+	InputStream is = new FileInputStream(filename);
+	if (filename.endsWith(".gz"))
+		is = new GZIPInputStream(is, BUFSIZE);
+	ObjectInputStream in = new ObjectInputStream(
+			new BufferedInputStream(is, BUFSIZE));
+	if (!MAGIC.equals(in.readUTF()) || in.readInt() != VERSION) {
+		in.close();
+		throw new IOException(filename + " is not a supported checkpoint");
+	}
+	return in;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes the given object. The protocols of the nodes that are reached
+ * for the first time are written after the object, one node after the
+ * other.
+ */
+public static void writeObject(ObjectOutputStream out, Object o)
+throws IOException
+{
+	GeneralNode.setCheckpointing(true);
+	try {
+		out.writeObject(o);
+		GeneralNode.writePending(out);
+	} finally {
+		GeneralNode.setCheckpointing(false);
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Reads an object written by {@link #writeObject}.
+ */
+public static Object readObject(ObjectInputStream in)
+throws IOException, ClassNotFoundException
+{
+	GeneralNode.setCheckpointing(true);
+	try {
+		Object o = in.readObject();
+		GeneralNode.readPending(in);
+		return o;
+	} finally {
+		GeneralNode.setCheckpointing(false);
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes the current time, the random generator and the network.
+ */
+public static void writeState(ObjectOutputStream out) throws IOException
+{
+	out.writeLong(CommonState.getTime());
+	out.writeLong(GeneralNode.getNextID());
+	out.writeObject(CommonState.r);
+	Node[] nodes = new Node[Network.size()];
+	System.arraycopy(Network.node, 0, nodes, 0, nodes.length);
+	writeObject(out, nodes);
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Restores the state written by {@link #writeState}. The nodes currently
+ * in the network are removed and replaced by the restored ones, and the
+ * random generator is replaced by the restored one. The prototype node is
+ * not changed, and the IDs of the nodes created from now on will not
+ * conflict with the restored ones.
+ */
+public static void readState(ObjectInputStream in)
+throws IOException, ClassNotFoundException
+{
+	CommonState.setTime(in.readLong());
+	GeneralNode.skipIDs(in.readLong());
+	CommonState.r = (ExtendedRandom) in.readObject();
+	CommonState.resetStreams();
+	Network.setNodes((Node[]) readObject(in));
+}
+
+}
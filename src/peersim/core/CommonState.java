@@ -101,6 +101,19 @@ private static Node node;
 */
 public static ExtendedRandom r = null;
 
+/**
+* The generator the random streams of the nodes are derived from. It is
+* never used to draw numbers, only its seed matters.
+* @see #getRandom(Node,int)
+*/
+private static SplitRandom streams = null;
+
+/**
+* Random streams of nodes that are not {@link GeneralNode}s.
+*/
+private static final java.util.Map<Node,ExtendedRandom[]> nodeStreams =
+	new java.util.WeakHashMap<Node,ExtendedRandom[]>();
+
 
 // ======================== initialization =========================
 // =================================================================
@@ -109,7 +122,8 @@ public static ExtendedRandom r = null;
 * Configuration parameter used to define which random generator
 * class should be used. If not specified, the default implementation
 * {@link ExtendedRandom} is used. User-specified random generators 
-* must extend class {@link ExtendedRandom}. 
+* must extend class {@link ExtendedRandom}. A faster generator that can
+* also be split into independent streams is {@link peersim.util.SplitRandom}.
 * @config
 */
 public static final String PAR_RANDOM = "random";
@@ -277,6 +291,74 @@ public static void initializeRandom(long seed)
 		r = (ExtendedRandom) Configuration.getInstance(PAR_RANDOM, new ExtendedRandom(seed));
 	}
 	r.setSeed(seed);
+	streams = new SplitRandom(seed);
+}
+
+//-----------------------------------------------------------------
+
+/**
+* Returns the random stream of the given protocol on the given node.
+* The stream is derived only from the seed of the experiment
+* (see {@link #initializeRandom}), the ID of the node and the protocol
+* identifier, so the numbers drawn from it do not depend on
+* the order in which nodes are executed or on the use of {@link #r} by
+* other components. This makes results reproducible when nodes are
+* executed in a different order, e.g. concurrently. The stream must be
+* used only while executing the given node, and is saved with the node by
+* {@link Checkpoint}. Clones of the node get their own streams.
+*/
+public static ExtendedRandom getRandom(Node node, int pid)
+{
+	if (node instanceof GeneralNode)
+		return ((GeneralNode) node).getRandom(pid);
+	synchronized (nodeStreams) {
+		ExtendedRandom[] rs = nodeStreams.get(node);
+		if (rs == null) {
+			rs = new ExtendedRandom[node.protocolSize()];
+			nodeStreams.put(node, rs);
+		}
+		if (rs[pid] == null)
+			rs[pid] = newRandom(node.getID(), pid);
+		return rs[pid];
+	}
+}
+
+//-----------------------------------------------------------------
+
+/**
+* Returns the random stream of the current protocol on the current node,
+* that is, <code>getRandom(getNode(),getPid())</code>.
+* @see #getRandom(Node,int)
+*/
+public static ExtendedRandom getRandom()
+{
+	return getRandom(node, pid);
+}
+
+//-----------------------------------------------------------------
+
+/**
+* Creates the random stream of the given protocol on the node with the
+* given ID.
+*/
+static SplitRandom newRandom(long id, int pid)
+{
+	if (streams == null)
+		streams = new SplitRandom(r.getLastSeed());
+	// multiplying by an odd constant is a bijection, so different
+	// (id,pid) pairs give different keys in practice
+	return streams.split(id * 0x9e3779b97f4a7c15L + pid);
+}
+
+//-----------------------------------------------------------------
+
+/**
+* Forgets the generator of the node streams, so that it is derived again
+* from {@link #r}. Used after {@link #r} has been replaced.
+*/
+static void resetStreams()
+{
+	streams = null;
 }
 
 //-----------------------------------------------------------------
@@ -18,7 +18,10 @@
 		
 package peersim.core;
 
+import java.io.*;
+import java.util.LinkedList;
 import peersim.config.*;
+import peersim.util.ExtendedRandom;
 
 /**
 * This is the default {@link Node} class that is used to compose the
@@ -26,6 +29,8 @@ import peersim.config.*;
 */
 public class GeneralNode implements Node {
 
+private static final long serialVersionUID = 1L;
+
 
 // ================= fields ========================================
 // =================================================================
@@ -34,9 +39,10 @@ public class GeneralNode implements Node {
 private static long counterID = -1;
 
 /**
-* The protocols on this node.
+* The protocols on this node. They are serialized separately, see
+* {@link #writeObject}.
 */
-protected Protocol[] protocol = null;
+protected transient Protocol[] protocol = null;
 
 /**
 * The current index of this node in the node
@@ -57,6 +63,25 @@ protected int failstate = Fallible.OK;
 */
 private long ID;
 
+/**
+* The number of references to this node in the event queue, see
+* {@link Network#hold}.
+*/
+int refs = 0;
+
+/**
+* The random streams of the protocols, created on demand.
+* @see CommonState#getRandom(Node,int)
+*/
+private ExtendedRandom[] random = null;
+
+/**
+* The nodes whose protocols still have to be written or read while a
+* checkpoint is being written or read; null otherwise.
+* @see Checkpoint
+*/
+private static LinkedList<GeneralNode> pending = null;
+
 // ================ constructor and initialization =================
 // =================================================================
 
@@ -89,6 +114,8 @@ public Object clone() {
 	try { result=(GeneralNode)super.clone(); }
 	catch( CloneNotSupportedException e ) {} // never happens
 	result.protocol = new Protocol[protocol.length];
+	result.random = null;
+	result.refs = 0;
 	CommonState.setNode(result);
 	result.ID=nextID();
 	for(int i=0; i<protocol.length; ++i) {
@@ -100,12 +127,100 @@ public Object clone() {
 
 // -----------------------------------------------------------------
 
+/**
+* Clones the node like {@link #clone}, but the clone gets the given ID,
+* that must have been obtained from {@link #reserveIDs}. Unlike
+* {@link #clone}, this method does not set the current node and protocol
+* in {@link CommonState}, so it can be called concurrently on the same
+* prototype, provided that the <code>clone</code> methods of the protocols
+* do not rely on shared state either.
+*/
+GeneralNode clone(long id) {
+	
+	GeneralNode result = null;
+	try { result=(GeneralNode)super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	result.protocol = new Protocol[protocol.length];
+	result.random = null;
+	result.refs = 0;
+	result.ID=id;
+	for(int i=0; i<protocol.length; ++i)
+		result.protocol[i] = (Protocol)protocol[i].clone();
+	return result;
+}
+
+// -----------------------------------------------------------------
+
 /** returns the next unique ID */
 private long nextID() {
 
 	return counterID++;
 }
 
+// -----------------------------------------------------------------
+
+/**
+* Reserves <code>n</code> consecutive unique IDs and returns the first one.
+* These are the same IDs that <code>n</code> consecutive calls to
+* {@link #clone} would assign.
+*/
+static long reserveIDs(int n) {
+
+	long first = counterID;
+	counterID += n;
+	return first;
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns true if this node can be reused by {@link #recycle}, that is, it
+* is dead, its class is GeneralNode and all its protocols implement
+* {@link Recyclable}.
+*/
+boolean isRecyclable() {
+
+	if( failstate != DEAD || getClass() != GeneralNode.class ) return false;
+	for(int i=0; i<protocol.length; ++i)
+		if( !(protocol[i] instanceof Recyclable) ) return false;
+	return true;
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Turns this dead node into a new node, as if it was cloned from
+* the given prototype: it gets a new ID, its fail state is
+* {@link Fallible#OK} and its protocols are reset by
+* {@link Recyclable#recycle}.
+* @see #isRecyclable
+*/
+void recycle(GeneralNode prototype) {
+
+	failstate = OK;
+	random = null;
+	CommonState.setNode(this);
+	ID=nextID();
+	for(int i=0; i<protocol.length; ++i) {
+		CommonState.setPid(i);
+		((Recyclable)protocol[i]).recycle(prototype.protocol[i]);
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+* Returns the random stream of the given protocol, creating it the first
+* time it is needed.
+* @see CommonState#getRandom(Node,int)
+*/
+ExtendedRandom getRandom(int pid) {
+
+	if( random == null ) random = new ExtendedRandom[protocol.length];
+	if( random[pid] == null ) random[pid] = CommonState.newRandom(ID,pid);
+	return random[pid];
+}
+
 // =============== public methods ==================================
 // =================================================================
 
@@ -122,12 +237,14 @@ public void setFailState(int failState) {
 			break;
 		case DEAD:
 			//protocol = null;
-			index = -1;
 			failstate = DEAD;
+			// the index is needed to find the node in the network
+			Network.updateFailState(this);
+			index = -1;
 			for(int i=0;i<protocol.length;++i)
 				if(protocol[i] instanceof Cleanable)
 					((Cleanable)protocol[i]).onKill();
-			break;
+			return;
 		case DOWN:
 			failstate = DOWN;
 			break;
@@ -135,6 +252,7 @@ public void setFailState(int failState) {
 			throw new IllegalArgumentException(
 				"failState="+failState);
 	}
+	Network.updateFailState(this);
 }
 
 // -----------------------------------------------------------------
@@ -184,6 +302,85 @@ public String toString()
 
 //------------------------------------------------------------------
 
+/**
+* Writes the node. If a checkpoint is being written, the protocols are not
+* written here; the node is queued and its protocols are written later by
+* {@link #writePending}. This way the nodes reached through the
+* neighbors of other nodes are written one after the other,
+* instead of recursively, which would overflow the stack on large
+* networks.
+*/
+private void writeObject(ObjectOutputStream out) throws IOException {
+
+	out.defaultWriteObject();
+	if( pending == null ) out.writeObject(protocol);
+	else pending.add(this);
+}
+
+//------------------------------------------------------------------
+
+/**
+* Reads the node, the counterpart of {@link #writeObject}.
+*/
+private void readObject(ObjectInputStream in)
+throws IOException, ClassNotFoundException {
+
+	in.defaultReadObject();
+	if( pending == null ) protocol = (Protocol[])in.readObject();
+	else pending.add(this);
+}
+
+//------------------------------------------------------------------
+
+/**
+* Starts or stops queueing the nodes whose protocols have to be written
+* or read separately.
+*/
+static void setCheckpointing(boolean on) {
+
+	pending = (on ? new LinkedList<GeneralNode>() : null);
+}
+
+//------------------------------------------------------------------
+
+/**
+* Writes the protocols of the queued nodes, including the nodes that
+* are queued in the meantime.
+*/
+static void writePending(ObjectOutputStream out) throws IOException {
+
+	while( !pending.isEmpty() )
+		out.writeObject(pending.removeFirst().protocol);
+}
+
+//------------------------------------------------------------------
+
+/**
+* Reads the protocols of the queued nodes, the counterpart of
+* {@link #writePending}.
+*/
+static void readPending(ObjectInputStream in)
+throws IOException, ClassNotFoundException {
+
+	while( !pending.isEmpty() )
+		pending.removeFirst().protocol = (Protocol[])in.readObject();
+}
+
+//------------------------------------------------------------------
+
+/** Returns the ID that will be assigned to the next node. */
+static long getNextID() { return counterID; }
+
+//------------------------------------------------------------------
+
+/**
+* Makes sure that the IDs assigned from now on are not smaller than the
+* given one.
+*/
+static void skipIDs(long next) { counterID = Math.max(counterID,next); }
+
+//------------------------------------------------------------------
+
 /** Implemented as <code>(int)getID()</code>. */
 public int hashCode() { return (int)getID(); }
 
@@ -26,9 +26,11 @@ import peersim.config.Configuration;
  * (topology). The only function of this protocol is to serve as a source of
  * neighborhood information for other protocols.
  */
-public class IdleProtocol implements Protocol, Linkable
+public class IdleProtocol implements Protocol, Linkable, Recyclable, Sweepable
 {
 
+private static final long serialVersionUID = 1L;
+
 // --------------------------------------------------------------------------
 // Parameters
 // --------------------------------------------------------------------------
@@ -48,9 +50,17 @@ private static final String PAR_INITCAP = "capacity";
 // Fields
 // --------------------------------------------------------------------------
 
-/** Neighbors */
+/**
+ * Neighbors. The clones of an IdleProtocol share the array with the
+ * prototype until it is changed (see {@link #clone}); the clones of
+ * subclasses get their own copy, since subclasses may change the array
+ * directly.
+ */
 protected Node[] neighbors;
 
+/** True if {@link #neighbors} may be shared with other protocols */
+private boolean shared;
+
 /** Actual number of neighbors in the array */
 protected int len;
 
@@ -63,21 +73,55 @@ public IdleProtocol(String s)
 	neighbors = new Node[Configuration.getInt(s + "." + PAR_INITCAP,
 			DEFAULT_INITIAL_CAPACITY)];
 	len = 0;
+	shared = true;
 }
 
 //--------------------------------------------------------------------------
 
+/**
+ * Returns a clone that shares the array of neighbors with this protocol.
+ * The array is copied by the first change of either of them (copy on
+ * write), so creating a network does not allocate an array for each node,
+ * and the nodes that are never linked never get one. Since subclasses may
+ * change the array without calling {@link #unshare}, their clones get a
+ * copy of the array instead.
+ */
 public Object clone()
 {
 	IdleProtocol ip = null;
 	try { ip = (IdleProtocol) super.clone(); }
 	catch( CloneNotSupportedException e ) {} // never happens
-	ip.neighbors = new Node[neighbors.length];
-	System.arraycopy(neighbors, 0, ip.neighbors, 0, len);
-	ip.len = len;
+	if (getClass() != IdleProtocol.class)
+	{
+		ip.neighbors = new Node[neighbors.length];
+		System.arraycopy(neighbors, 0, ip.neighbors, 0, len);
+		ip.shared = false;
+		return ip;
+	}
+	// the prototype is shared from its construction, so that concurrent
+	// clones of the prototype do not write this field
+	if (!shared) shared = true;
+	ip.shared = true;
 	return ip;
 }
 
+//--------------------------------------------------------------------------
+
+/** Copies the neighbors of the prototype, reusing the array if possible. */
+public void recycle(Protocol prototype)
+{
+	IdleProtocol ip = (IdleProtocol) prototype;
+	if (shared || neighbors == null || neighbors.length < ip.neighbors.length)
+	{
+		neighbors = new Node[ip.neighbors.length];
+		shared = false;
+	}
+	else if (len > ip.len)
+		java.util.Arrays.fill(neighbors, ip.len, len, null);
+	System.arraycopy(ip.neighbors, 0, neighbors, 0, ip.len);
+	len = ip.len;
+}
+
 // --------------------------------------------------------------------------
 // Methods
 // --------------------------------------------------------------------------
@@ -105,7 +149,9 @@ public boolean addNeighbor(Node n)
 		Node[] temp = new Node[3 * neighbors.length / 2];
 		System.arraycopy(neighbors, 0, temp, 0, neighbors.length);
 		neighbors = temp;
+		shared = false;
 	}
+	unshare();
 	neighbors[len] = n;
 	len++;
 	return true;
@@ -134,6 +180,27 @@ public void pack()
 	Node[] temp = new Node[len];
 	System.arraycopy(neighbors, 0, temp, 0, len);
 	neighbors = temp;
+	shared = false;
+}
+
+// --------------------------------------------------------------------------
+
+public int sweep()
+{
+	if (neighbors == null)
+		return 0;
+	if (len > 0)
+		unshare();
+	int j = 0;
+	for (int i = 0; i < len; i++) {
+		if (neighbors[i].getFailState() != Fallible.DEAD)
+			neighbors[j++] = neighbors[i];
+	}
+	final int removed = len - j;
+	for (int i = j; i < len; i++)
+		neighbors[i] = null;
+	len = j;
+	return removed;
 }
 
 // --------------------------------------------------------------------------
@@ -155,6 +222,23 @@ public void onKill()
 {
 	neighbors = null;
 	len = 0;
+	shared = false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Copies the array of neighbors if it may be shared with other protocols,
+ * so that it can be changed.
+ */
+protected void unshare()
+{
+	if (!shared)
+		return;
+	Node[] temp = new Node[neighbors.length];
+	System.arraycopy(neighbors, 0, temp, 0, len);
+	neighbors = temp;
+	shared = false;
 }
 
 }
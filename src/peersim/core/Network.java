@@ -19,8 +19,11 @@
 package peersim.core;
 
 import peersim.config.Configuration;
+import peersim.config.IllegalParameterException;
 import java.util.Comparator;
 import java.util.Arrays;
+import java.util.BitSet;
+import peersim.util.ParallelFor;
 
 /**
 * This class forms the basic framework of all simulations.
@@ -74,6 +77,22 @@ private static final String PAR_MAXSIZE = "network.initialCapacity";
 */
 private static final String PAR_SIZE = "network.size";
 
+/**
+* This config property defines the number of threads used to populate the
+* network and to run {@link ParallelInitializer}s. Defaults to 1, that is,
+* everything is done sequentially in the calling thread.
+* <p>
+* Parallel population is used only if the prototype is a
+* {@link GeneralNode} that does not override <code>clone()</code>. The
+* nodes get the same IDs as in the sequential case, but the current node and
+* protocol are not set in {@link CommonState} while the protocols are
+* cloned, so the <code>clone</code> methods of the protocols must not rely
+* on {@link CommonState} (including its random generator) or on other
+* shared state.
+* @config
+*/
+private static final String PAR_THREADS = "network.threads";
+
 /**
 * The node array. This is not a private array which is not nice but
 * efficiency has the highest priority here. The main purpose is to allow
@@ -98,6 +117,45 @@ private static int len;
 */
 public static Node prototype = null;
 
+/**
+* The number of threads used to populate and initialize the network.
+*/
+private static int threads = 1;
+
+/**
+* Removed nodes that can be reused by {@link #newNode}, a circular queue
+* in the order of removal.
+* @see #recycle
+*/
+private static Node[] pool = new Node[0];
+
+/** The position of the oldest node in {@link #pool} */
+private static int poolHead = 0;
+
+/** The number of nodes in {@link #pool} */
+private static int poolLen = 0;
+
+/**
+* The indexes of the nodes that are up: bit i is set if and only if
+* <code>node[i].isUp()</code>. Maintained by the methods that change the
+* node list and by {@link #updateFailState}.
+*/
+private static final BitSet up = new BitSet();
+
+/** The number of nodes that are up */
+private static int upCount = 0;
+
+/**
+* True if all the nodes in the network are known to report the changes of
+* their fail state through {@link #updateFailState}, so that {@link #up}
+* can be trusted. Otherwise {@link #liveSize} and {@link #nextLive} check
+* the nodes themselves.
+*/
+private static boolean indexed = false;
+
+/** The number of changes of the node set, see {@link #getModCount} */
+private static long modCount = 0;
+
 
 // ====================== initialization ===========================
 // =================================================================
@@ -115,6 +173,9 @@ public static void reset() {
 		while( len>0 ) remove(); // this is to call onKill on all nodes
 		prototype = null;
 		node = null;
+		pool = new Node[0];
+		poolHead = 0;
+		poolLen = 0;
 	}
 	
 	len = Configuration.getInt(PAR_SIZE);
@@ -123,6 +184,9 @@ public static void reset() {
 			PAR_MAXSIZE+" is less than "+PAR_SIZE);
 
 	node = new Node[maxlen];
+	threads = Configuration.getInt(PAR_THREADS,1);
+	if( threads < 1 ) throw new IllegalParameterException(PAR_THREADS,
+			"the number of threads must be positive");
 	
 	// creating prototype node
 	Node tmp = null;
@@ -138,9 +202,24 @@ public static void reset() {
 	}
 	prototype = tmp;
 	prototype.setIndex(-1);
+	indexed = reportsFailState(prototype);
 
 	// cloning the nodes
-	if(len > 0 )
+	if( len > 0 && threads > 1 && isParallelCloneable(prototype) )
+	{
+		final GeneralNode proto = (GeneralNode)prototype;
+		final long firstID = GeneralNode.reserveIDs(len);
+		initialize(new ParallelInitializer() {
+			public void initialize(int from, int to) {
+				for(int i=from; i<to; ++i)
+				{
+					node[i] = proto.clone(firstID+i);
+					node[i].setIndex(i);
+				}
+			}
+		});
+	}
+	else if(len > 0 )
 	{
 		for(int i=0; i<len; ++i)
 		{
@@ -148,6 +227,76 @@ public static void reset() {
 			node[i].setIndex(i);
 		}
 	}
+	updateLive();
+	modCount++;
+}
+
+/**
+* Returns true if the given prototype can be cloned concurrently, that is,
+* if it is a {@link GeneralNode} whose cloning is not redefined by a
+* subclass.
+*/
+private static boolean isParallelCloneable(Node proto) {
+	
+	if( !(proto instanceof GeneralNode) ) return false;
+	try
+	{
+		return proto.getClass().getMethod("clone").getDeclaringClass()
+			== GeneralNode.class;
+	}
+	catch( NoSuchMethodException e ) { return false; } // never happens
+}
+
+/**
+* Returns true if the given node reports the changes of its fail state
+* to {@link #updateFailState}, that is, if it is a {@link GeneralNode}
+* whose <code>setFailState</code> is not redefined by a subclass.
+*/
+private static boolean reportsFailState(Node n) {
+	
+	if( !(n instanceof GeneralNode) ) return false;
+	try
+	{
+		return n.getClass().getMethod("setFailState",int.class).
+			getDeclaringClass() == GeneralNode.class;
+	}
+	catch( NoSuchMethodException e ) { return false; } // never happens
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Clears {@link #indexed} if the given node, which is entering the
+* network, might not report the changes of its fail state.
+*/
+private static void checkIndexed(Node n) {
+	
+	if( indexed && n.getClass() != prototype.getClass() )
+		indexed = reportsFailState(n);
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Recomputes the set of nodes that are up from scratch.
+*/
+private static void updateLive() {
+	
+	up.clear();
+	upCount = 0;
+	for(int i=0; i<len; ++i) setUp(i,node[i].isUp());
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Records whether the node with the given index is up.
+*/
+private static void setUp(int i, boolean isUp) {
+	
+	if( up.get(i) == isUp ) return;
+	up.set(i,isUp);
+	upCount += isUp ? 1 : -1;
 }
 
 /** Disable instance construction */
@@ -161,6 +310,102 @@ public static int size() { return len; }
 
 // ------------------------------------------------------------------
 
+/**
+* Returns the number of nodes in the network that are up. If it is less
+* than {@link #size}, loops that process only the nodes that are up can
+* skip the others using {@link #nextLive}. It takes constant time if all
+* the nodes report the changes of their fail state through
+* {@link #updateFailState}, otherwise the nodes are checked one by one.
+*/
+public static int liveSize() {
+	
+	if( indexed ) return upCount;
+	int n = 0;
+	for(int i=0; i<len; ++i) if( node[i].isUp() ) n++;
+	return n;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Returns the smallest index not smaller than the given one whose node is
+* up, or -1 if there is no such node. The nodes that are up can be visited
+* in index order as
+* <pre>
+* for(int i=Network.nextLive(0); i>=0; i=Network.nextLive(i+1))
+* </pre>
+* and the cost of skipping the other nodes is small, since the index is
+* kept as a bitset. If some nodes do not report the changes of their fail
+* state through {@link #updateFailState}, the nodes are checked one by one
+* instead.
+*/
+public static int nextLive(int i) {
+	
+	if( !indexed )
+	{
+		for(; i<len; ++i) if( node[i].isUp() ) return i;
+		return -1;
+	}
+	final int j = up.nextSetBit(i);
+	return j < len ? j : -1;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Updates the index of the nodes that are up after the fail state of the
+* given node has changed. It has no effect if the node is not in the
+* network. It is called by {@link GeneralNode#setFailState}. The index is
+* used only while all the nodes are {@link GeneralNode}s whose
+* <code>setFailState</code> is not redefined; other implementations of
+* {@link Node} do not need to call this method, {@link #liveSize} and
+* {@link #nextLive} check their fail state directly.
+*/
+public static void updateFailState(Node n) {
+	
+	final int i = n.getIndex();
+	if( i>=0 && i<len && node[i]==n ) setUp(i,n.isUp());
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Returns the number of threads used to populate and initialize the
+* network, as defined by configuration parameter {@value #PAR_THREADS}.
+*/
+public static int getThreads() { return threads; }
+
+// ------------------------------------------------------------------
+
+/**
+* Returns a number that changes whenever nodes are added to or removed from
+* the network, including when the network is populated again for a new
+* experiment. Components that cache information about the set of nodes
+* can compare it with the value they saw to find out whether the set has
+* changed, even if its size has not. It does not change when the nodes are
+* only reordered or change their fail state.
+*/
+public static long getModCount() { return modCount; }
+
+// ------------------------------------------------------------------
+
+/**
+* Runs the given initializer on the whole network. The network is split
+* into {@link #getThreads} contiguous ranges of nearly equal size, which
+* are initialized concurrently. If only one thread is configured, the
+* initializer is called once in the calling thread.
+* Any exception thrown by the initializer is rethrown after all threads
+* have finished.
+*/
+public static void initialize(final ParallelInitializer init) {
+	
+	ParallelFor.run(len, threads, new ParallelFor.Range() {
+		public void run(int from, int to) { init.initialize(from,to); }
+	});
+}
+
+// ------------------------------------------------------------------
+
 /**
 * Sets the capacity of the internal array storing the nodes.
 * The nodes will remain the same in the same order.
@@ -198,9 +443,112 @@ public static int getCapacity() { return node.length; }
 public static void add( Node n ) {
 	
 	if(len==node.length) setCapacity(3*node.length/2+1);
+	checkIndexed(n);
 	node[len] = n;
 	n.setIndex(len);
+	setUp(len,n.isUp());
 	len++;
+	modCount++;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Adds the given nodes to the end of the node list, growing the
+* capacity at most once. Equivalent to calling {@link #add(Node)} for each
+* node in order.
+*/
+public static void add( Node[] nodes ) {
+	
+	if( len+nodes.length > node.length )
+		setCapacity(Math.max(len+nodes.length,3*node.length/2+1));
+	for(int i=0; i<nodes.length; ++i)
+	{
+		checkIndexed(nodes[i]);
+		node[len] = nodes[i];
+		nodes[i].setIndex(len);
+		setUp(len,nodes[i].isUp());
+		len++;
+	}
+	modCount++;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Returns a new node to be added to the network: the node that was
+* removed first among those in the pool of recycled nodes (see
+* {@link #recycle}), if no event can still be delivered to it; otherwise
+* a clone of the {@link #prototype}. The node is not added to the network.
+* @see #hold
+*/
+public static Node newNode() {
+	
+	if( poolLen == 0 || ((GeneralNode)pool[poolHead]).refs > 0 )
+		return (Node)prototype.clone();
+	GeneralNode n = (GeneralNode)pool[poolHead];
+	pool[poolHead] = null;
+	poolHead = (poolHead+1) % pool.length;
+	poolLen--;
+	n.recycle((GeneralNode)prototype);
+	return n;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Offers the given removed node for reuse by {@link #newNode}. The node is
+* kept only if it is dead, it is a {@link GeneralNode} whose protocols
+* are all {@link Recyclable}, the prototype is also a GeneralNode, and the
+* pool is not larger than the capacity of the network; otherwise it is
+* left to the garbage collector. The caller must make sure that the node
+* is not referenced any more, see {@link Recyclable}.
+* @return true if the node was put into the pool
+*/
+public static boolean recycle( Node n ) {
+	
+	if( !(n instanceof GeneralNode) || !(prototype instanceof GeneralNode) ||
+	    !((GeneralNode)n).isRecyclable() || poolLen >= node.length )
+		return false;
+	if( poolLen == pool.length )
+	{
+		Node[] tmp = new Node[Math.max(16, 2*pool.length)];
+		for(int i=0; i<poolLen; ++i)
+			tmp[i] = pool[(poolHead+i) % pool.length];
+		pool = tmp;
+		poolHead = 0;
+	}
+	pool[(poolHead+poolLen) % pool.length] = n;
+	poolLen++;
+	return true;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Records that a reference to the given node has been put into the event
+* queue of the event driven engine, so that an event can be delivered to
+* it later. A removed node is not reused by {@link #newNode} as long as
+* the references to it have not been released by {@link #release};
+* otherwise the events scheduled for the removed node would be delivered
+* to the new one. It is called by {@link peersim.edsim.EDSimulator};
+* other components that keep removed nodes scheduled should call it too.
+* It has no effect on nodes that are not {@link GeneralNode}s.
+*/
+public static void hold( Node n ) {
+	
+	if( n instanceof GeneralNode ) ((GeneralNode)n).refs++;
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Releases a reference recorded by {@link #hold}, when the event has been
+* delivered or dropped.
+*/
+public static void release( Node n ) {
+	
+	if( n instanceof GeneralNode ) ((GeneralNode)n).refs--;
 }
 
 // ------------------------------------------------------------------
@@ -227,7 +575,9 @@ public static Node remove() {
 	
 	Node n = node[len-1]; // if len was zero this throws and exception
 	node[len-1]=null;
+	setUp(len-1,false);
 	len--;
+	modCount++;
 	n.setFailState(Fallible.DEAD);
 	return n;
 }
@@ -251,6 +601,42 @@ public static Node remove(int i) {
 
 // ------------------------------------------------------------------
 
+/**
+* Removes <code>k</code> random nodes and returns them in the order they
+* were drawn. The result is the same as that of calling
+* <code>remove(CommonState.r.nextInt(size()))</code> <code>k</code> times,
+* including the random numbers drawn and the final order of the nodes,
+* but each removal only moves the last node into the place of the removed
+* one, without the full {@link #swap}, and the fail state of the removed
+* nodes is set to {@link Fallible#DEAD} after all of them have been taken
+* out of the list.
+*/
+public static Node[] removeRandom( int k ) {
+	
+	if( k<0 || k>len ) throw new IndexOutOfBoundsException(""+k);
+	Node[] removed = new Node[k];
+	for(int j=0; j<k; ++j)
+	{
+		final int i = CommonState.r.nextInt(len);
+		final int last = len-1;
+		removed[j] = node[i];
+		if( i != last )
+		{
+			node[i] = node[last];
+			node[i].setIndex(i);
+			setUp(i,up.get(last));
+		}
+		node[last] = null;
+		setUp(last,false);
+		len--;
+	}
+	modCount++;
+	for(int j=0; j<k; ++j) removed[j].setFailState(Fallible.DEAD);
+	return removed;
+}
+
+// ------------------------------------------------------------------
+
 /**
 * Swaps the two nodes at the given indexes.
 */
@@ -261,6 +647,9 @@ public static void swap(int i, int j) {
 	node[j] = n;
 	node[j].setIndex(j);
 	node[i].setIndex(i);
+	final boolean b = up.get(i);
+	up.set(i,up.get(j));
+	up.set(j,b);
 }
 
 // ------------------------------------------------------------------
@@ -284,6 +673,30 @@ public static void sort(Comparator<? super Node> c) {
 	
 	Arrays.sort(node,0,len,c);
 	for(int i=0; i<len; i++) node[i].setIndex(i);
+	updateLive();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Replaces the nodes of the network with the given ones, used to restore a
+* {@link Checkpoint}. The current nodes are removed through
+* {@link #remove()}. The capacity is increased if necessary.
+*/
+static void setNodes(Node[] nodes) {
+	
+	while( len>0 ) remove();
+	if( node.length < nodes.length ) node = new Node[nodes.length];
+	indexed = prototype != null && reportsFailState(prototype);
+	for(int i=0; i<nodes.length; ++i)
+	{
+		checkIndexed(nodes[i]);
+		node[i] = nodes[i];
+		node[i].setIndex(i);
+	}
+	len = nodes.length;
+	updateLive();
+	modCount++;
 }
 
 // ------------------------------------------------------------------
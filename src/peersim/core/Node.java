@@ -24,7 +24,7 @@ package peersim.core;
  * able to represent failure states and store a list of protocols. It is the
  * protocols that do the interesting job.
  */
-public interface Node extends Fallible, Cloneable
+public interface Node extends Fallible, Cloneable, java.io.Serializable
 {
 
 /**
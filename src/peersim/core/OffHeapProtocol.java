@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+import java.io.IOException;
+import peersim.config.*;
+import peersim.util.OffHeapStore;
+
+/**
+ * Base class of protocols whose state is a fixed-layout record kept outside
+ * the Java heap. All the clones of a prototype share one
+ * {@link OffHeapStore}, and each of them holds only the number of its
+ * record: the protocol object is a flyweight view of the record, whose heap
+ * footprint does not depend on the size of the state, and the state is not
+ * scanned by the garbage collector. This makes it possible to simulate
+ * networks whose protocol state does not fit in the heap (or in memory, if
+ * the store is mapped to a file). The nodes themselves and their protocol
+ * arrays are still on the heap.
+ * <p>
+ * Subclasses define the layout of the record, passing its size to the
+ * constructor, and access their fields through {@link #store} at the
+ * offsets they define within {@link #record}. Fields that do not need to be
+ * per node (e.g. configuration parameters) can be ordinary fields, since
+ * they are shared by the clones. A clone gets a new record with a copy of
+ * the record of the prototype. The protocol is {@link Recyclable}, so under
+ * churn the records of removed nodes are reused if nodes are recycled;
+ * otherwise they are not freed.
+ */
+public abstract class OffHeapProtocol implements Protocol, Recyclable
+{
+
+// ========================= parameters ===============================
+// ====================================================================
+
+/**
+ * If defined, the records are kept in a file with this name, mapped into
+ * memory, instead of in direct memory. The file is overwritten.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+// ========================= fields ===================================
+// ====================================================================
+
+private static final long serialVersionUID = 1L;
+
+/** The store holding the records of all the clones of the prototype */
+protected final OffHeapStore store;
+
+/** The number of the record of this protocol in {@link #store} */
+protected long record;
+
+// ========================= initialization ===========================
+// ====================================================================
+
+/**
+ * Creates the store and the record of the prototype, which is filled with
+ * zeros.
+ * @param prefix the configuration prefix of the protocol
+ * @param recordSize the size in bytes of the state of a node
+ */
+protected OffHeapProtocol(String prefix, int recordSize)
+{
+	String file = Configuration.getString(prefix+"."+PAR_FILE, null);
+	try {
+		store = new OffHeapStore(recordSize, file);
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix+"."+PAR_FILE,
+			e.getMessage());
+	}
+	record = store.allocate();
+}
+
+// --------------------------------------------------------------------
+
+/**
+ * Returns a view of a new record holding a copy of the record of this
+ * protocol. Subclasses that override this method must call it.
+ */
+public Object clone()
+{
+	OffHeapProtocol p = null;
+	try { p = (OffHeapProtocol) super.clone(); }
+	catch (CloneNotSupportedException e) {} // never happens
+	p.record = store.allocate();
+	store.copy(record, p.record);
+	return p;
+}
+
+// --------------------------------------------------------------------
+
+/**
+ * Copies the record of the prototype into the record of this protocol.
+ */
+public void recycle(Protocol prototype)
+{
+	store.copy(((OffHeapProtocol) prototype).record, record);
+}
+
+}
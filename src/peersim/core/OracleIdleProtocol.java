@@ -27,6 +27,8 @@ package peersim.core;
 */
 public final class OracleIdleProtocol implements Protocol, Linkable {
 
+private static final long serialVersionUID = 1L;
+
 // =================== initialization, creation ======================
 // ===================================================================
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+/**
+ * An initializer that can initialize disjoint ranges of the network
+ * concurrently. Initializers (components of type <code>init</code>)
+ * implementing this interface are executed by the simulation engines
+ * through {@link Network#initialize} instead of {@link Control#execute},
+ * which splits the network among {@link Network#getThreads} threads.
+ * <p>
+ * Implementations must not use any shared state (including
+ * {@link CommonState#r}) in {@link #initialize}, and the result must not
+ * depend on how the network is split into ranges. Implementations that are
+ * also controls should implement {@link Control#execute} as
+ * <code>initialize(0,Network.size())</code>.
+ */
+public interface ParallelInitializer
+{
+
+/**
+ * Initializes the nodes with indexes from <code>from</code> (inclusive)
+ * to <code>to</code> (exclusive). This method may be called concurrently
+ * for disjoint ranges.
+ */
+public void initialize(int from, int to);
+
+}
@@ -24,7 +24,7 @@ package peersim.core;
  * @author Alberto Montresor
  * @version $Revision: 1.5 $
  */
-public interface Protocol extends Cloneable
+public interface Protocol extends Cloneable, java.io.Serializable
 {
 
 /**
@@ -33,6 +33,21 @@ public interface Protocol extends Cloneable
  * cloning except a prototype node. That is, the constructor of protocols is
  * used only to construct the prototype. Initialization can be done
  * via {@link Control}s.
+ * <p>
+ * Since there is one clone per node, the cost of cloning is paid millions
+ * of times. <code>Object.clone</code> copies references, so data derived
+ * from the configuration (parameters, tables) is shared by all the clones
+ * as long as it is not copied explicitly; only the mutable state of a node
+ * needs to be copied. A protocol without per-node state can return
+ * <code>this</code> (see e.g.
+ * {@link peersim.transport.UniformRandomTransport}). Mutable state that is
+ * usually the same as that of the prototype, like an empty array of
+ * neighbors, can be shared and copied only when it is first changed (see
+ * {@link IdleProtocol#clone}).
+ * <p>
+ * Protocols are serializable so that the state of the simulation can be
+ * saved by {@link Checkpoint}; fields that cannot or need not be saved
+ * should be declared <code>transient</code>.
  */
 public Object clone();
 
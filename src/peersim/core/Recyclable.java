@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+/**
+ * This interface can be implemented by protocols whose objects can be reused
+ * for new nodes after their node has been removed from the network. Under
+ * heavy churn this saves the allocation of new nodes and protocols: if all
+ * the protocols of a removed {@link GeneralNode} implement this interface,
+ * the node can be put into the pool of {@link Network#recycle} and returned
+ * by {@link Network#newNode} instead of a clone of the prototype.
+ * <p>
+ * Note that a recycled node is the same object as the removed one. Nodes
+ * should be recycled only if no other node or protocol refers to the
+ * removed node any longer; otherwise those references would silently
+ * point to the new node. References held by the event queue of the event
+ * driven engine are taken care of: a removed node is not reused as long as
+ * events scheduled for it (including its pending cycles) have not been
+ * delivered or dropped, see {@link Network#hold}. Other components that
+ * keep removed nodes scheduled must call {@link Network#hold} too.
+ */
+public interface Recyclable
+{
+
+/**
+ * Resets the state of this protocol to the state of a clone of the given
+ * prototype, that is, the state it would have if it had been created by
+ * <code>prototype.clone()</code>. As in {@link Protocol#clone}, the current
+ * node and protocol identifier of {@link CommonState} are set accordingly.
+ * Implementations that are extended by classes with additional state
+ * must be overridden by them.
+ * @param prototype the protocol of the prototype node, of the same class
+ * as this protocol
+ */
+public void recycle(Protocol prototype);
+
+}
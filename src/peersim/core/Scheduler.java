@@ -181,6 +181,23 @@ public long getNext()
 	return ret;
 }
 
+//-------------------------------------------------------------------
+
+/**
+* Skips the time points that are earlier than the given time, so that the
+* next call to {@link #getNext} returns the first time point not earlier
+* than <code>time</code>. Used when a simulation is resumed from a
+* {@link Checkpoint}.
+*/
+public void skipTo(long time)
+{
+	if( next < 0 || next >= time ) return;
+	long k = (time-next+step-1)/step;
+	// check like this to prevent integer overflow of "next"
+	if( k <= (until-1-next)/step ) next += k*step;
+	else next = -1;
+}
+
 }
 
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+/**
+ * This interface can be implemented by protocols that hold links to other
+ * nodes, typically {@link Linkable}s, to allow the removal of the links to
+ * dead nodes. {@link Cleanable} only notifies the protocols of the node
+ * that is removed; the links that other nodes hold to it remain, so the
+ * removed node cannot be garbage collected, and the protocols keep
+ * skipping it. Instead of searching for these links at each removal,
+ * {@link peersim.dynamics.DeadLinkSweeper} calls {@link #sweep} on all the
+ * nodes periodically, which removes them in bulk.
+ */
+public interface Sweepable
+{
+
+/**
+ * Removes all the links to nodes whose fail state is {@link Fallible#DEAD},
+ * keeping the order of the other links. Links to nodes that are down are
+ * kept, since these nodes might come back. Implementations should not
+ * access {@link CommonState}, since this method might be called
+ * concurrently on different nodes.
+ * @return the number of links removed
+ */
+public int sweep();
+
+}
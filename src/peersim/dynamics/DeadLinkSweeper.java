@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.util.ParallelFor;
+
+/**
+ * Removes the links to dead nodes from the {@link Sweepable} protocols of
+ * all the nodes in the network. Scheduled periodically in long simulations
+ * with churn, it bounds the memory held by removed nodes and the time
+ * protocols and {@link OverlayGraph} spend skipping them, at the cost of
+ * one pass over the network per execution instead of one search per
+ * removal. If {@link Network#getThreads} is larger than one, the network
+ * is swept by several threads.
+ * <p>
+ * Removing links changes the neighbor lists, so the behavior of the
+ * protocols that select neighbors at random might change as well. It is
+ * also a prerequisite for recycling removed nodes (see
+ * {@link DynamicNetwork}).
+ */
+public class DeadLinkSweeper implements Control
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The protocol to sweep. If not defined, all the protocols that implement
+ * {@link Sweepable} are swept.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The protocol to sweep, or -1 if all */
+private final int pid;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public DeadLinkSweeper(String prefix)
+{
+	if (Configuration.contains(prefix + "." + PAR_PROT))
+		pid = Configuration.getPid(prefix + "." + PAR_PROT);
+	else
+		pid = -1;
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * Sweeps the configured protocols of all the nodes.
+ * @return always false
+ */
+public boolean execute()
+{
+	ParallelFor.run(Network.size(), Network.getThreads(),
+			new ParallelFor.Range() {
+		public void run(int from, int to)
+		{
+			for (int i = from; i < to; ++i)
+				sweep(Network.get(i));
+		}
+	});
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Sweeps the configured protocols of the given node.
+ */
+private void sweep(Node node)
+{
+	if (pid >= 0) {
+		((Sweepable) node.getProtocol(pid)).sweep();
+		return;
+	}
+	for (int j = 0; j < node.protocolSize(); ++j) {
+		if (node.getProtocol(j) instanceof Sweepable)
+			((Sweepable) node.getProtocol(j)).sweep();
+	}
+}
+
+}
@@ -89,6 +89,32 @@ private static final String PAR_MAX = "maxsize";
  */
 private static final String PAR_MIN = "minsize";
 
+/**
+ * If defined, removed nodes are put into the pool of {@link Network#recycle}
+ * and reused for the nodes added later, instead of cloning the prototype.
+ * This avoids allocating new nodes and protocols under heavy churn, but it
+ * is correct only if the protocols implement {@link Recyclable} and removed
+ * nodes are not referenced any more, for example because the protocols
+ * holding links drop them when they are notified by {@link Cleanable}.
+ * In event driven simulations a removed node is reused only after the
+ * events scheduled for it have been delivered or dropped, see
+ * {@link Network#hold}.
+ * Not set by default.
+ * @config
+ */
+private static final String PAR_RECYCLE = "recycle";
+
+/**
+ * If defined, the nodes added by an execution are added to the network
+ * together, with {@link Network#add(Node[])}, after the initializers have
+ * been run on all of them. The initializers then do not see the nodes
+ * added earlier by the same execution, so initializers that sample the
+ * network, like {@link RandNI}, give different results.
+ * Not set by default: each node is added right after it is initialized.
+ * @config
+ */
+private static final String PAR_BULK = "bulk";
+
 // --------------------------------------------------------------------------
 // Fields
 // --------------------------------------------------------------------------
@@ -105,6 +131,12 @@ protected final int minsize;
 /** value of {@value #PAR_MAX} */
 protected final int maxsize;
 
+/** value of {@value #PAR_RECYCLE} */
+protected final boolean recycle;
+
+/** value of {@value #PAR_BULK} */
+protected final boolean bulk;
+
 /** node initializers to apply on the newly added nodes */
 protected final NodeInitializer[] inits;
 
@@ -115,20 +147,28 @@ protected final NodeInitializer[] inits;
 /**
  * Adds n nodes to the network. Extending classes can implement any algorithm to
  * do that. The default algorithm adds the given number of nodes after calling
- * all the configured initializers on them.
+ * all the configured initializers on them, one by one or, if
+ * {@value #PAR_BULK} is set, all together.
  * 
  * @param n
  *          the number of nodes to add, must be non-negative.
  */
 protected void add(int n)
 {
+	Node[] nodes = bulk ? new Node[n] : null;
 	for (int i = 0; i < n; ++i) {
-		Node newnode = (Node) Network.prototype.clone();
+		Node newnode = recycle ? Network.newNode() :
+			(Node) Network.prototype.clone();
 		for (int j = 0; j < inits.length; ++j) {
 			inits[j].initialize(newnode);
 		}
-		Network.add(newnode);
+		if (bulk)
+			nodes[i] = newnode;
+		else
+			Network.add(newnode);
 	}
+	if (bulk)
+		Network.add(nodes);
 }
 
 // ------------------------------------------------------------------
@@ -136,13 +176,17 @@ protected void add(int n)
 /**
  * Removes n nodes from the network. Extending classes can implement any
  * algorithm to do that. The default algorithm removes <em>random</em>
- * nodes <em>permanently</em> simply by calling {@link Network#remove(int)}.
+ * nodes <em>permanently</em> using {@link Network#removeRandom}, which is
+ * equivalent to calling {@link Network#remove(int)} with random indexes.
+ * If {@value #PAR_RECYCLE} is set, the removed nodes are recycled.
  * @param n the number of nodes to remove
  */
 protected void remove(int n)
 {
-	for (int i = 0; i < n; ++i) {
-		Network.remove(CommonState.r.nextInt(Network.size()));
+	Node[] removed = Network.removeRandom(n);
+	if (recycle) {
+		for (int i = 0; i < removed.length; ++i)
+			Network.recycle(removed[i]);
 	}
 }
 
@@ -168,6 +212,8 @@ public DynamicNetwork(String prefix)
 	}
 	maxsize=Configuration.getInt(prefix+"."+PAR_MAX,Integer.MAX_VALUE);
 	minsize = Configuration.getInt(prefix + "." + PAR_MIN, 0);
+	recycle = Configuration.contains(prefix + "." + PAR_RECYCLE);
+	bulk = Configuration.contains(prefix + "." + PAR_BULK);
 }
 
 // --------------------------------------------------------------------------
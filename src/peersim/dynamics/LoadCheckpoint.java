@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import java.io.*;
+import peersim.Simulator;
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.edsim.EDSimulator;
+
+/**
+ * Restores the state of the simulation saved by {@link SaveCheckpoint}.
+ * It is meant to be used as the first initializer: the nodes created by
+ * {@link Network#reset} are replaced by the saved ones, and the time and the
+ * random generator are restored. In event driven simulations the saved
+ * events replace the event queue, and the controls are scheduled starting
+ * from the restored time, so the experiment continues from where the saved
+ * one was interrupted. Initializers that schedule events (like
+ * {@link peersim.edsim.CDScheduler}) should not be used together with
+ * this class, since the events they scheduled are restored as well. In
+ * cycle driven simulations the cycles are counted from zero as usual.
+ * <p>
+ * The configuration of the protocols must be the same as the one used
+ * when the checkpoint was saved, although other initializers and controls
+ * can be different.
+ */
+public class LoadCheckpoint implements Control
+{
+
+// ========================= fields =================================
+// ==================================================================
+
+/**
+ * The file to read the checkpoint from.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/** The name of this component in the configuration */
+private final String name;
+
+/** The file to read */
+private final String file;
+
+// ==================== initialization ==============================
+// ==================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public LoadCheckpoint(String prefix)
+{
+	name = prefix;
+	file = Configuration.getString(prefix + "." + PAR_FILE);
+}
+
+// ===================== methods ====================================
+// ==================================================================
+
+/**
+ * Restores the checkpoint.
+ * @return always false
+ */
+public boolean execute()
+{
+	try {
+		ObjectInputStream in = Checkpoint.openInput(file);
+		Checkpoint.readState(in);
+		boolean events = in.readBoolean();
+		if (Simulator.getSimID() == Simulator.EDSIM) {
+			if (!events)
+				throw new RuntimeException(name + ": " + file
+					+ " was not saved by an event driven simulation");
+			EDSimulator.readEvents(in);
+		}
+		in.close();
+	} catch (IOException e) {
+		throw new RuntimeException(name + ": unable to read " + file, e);
+	} catch (ClassNotFoundException e) {
+		throw new RuntimeException(name + ": unable to read " + file, e);
+	}
+	System.err.println(name + ": checkpoint " + file + " restored at time "
+			+ CommonState.getTime());
+	return false;
+}
+
+}
@@ -84,6 +84,21 @@ private static final String PAR_MIN = "minsize";
  */
 private static final String PAR_PERIOD = "period";
 
+/**
+ * If defined, removed nodes are reused for the nodes added later, as in
+ * {@link DynamicNetwork}. Not set by default.
+ * @config
+ */
+private static final String PAR_RECYCLE = "recycle";
+
+/**
+ * If defined, the nodes added by an execution are added to the network
+ * together after they have been initialized, as in {@link DynamicNetwork}.
+ * Not set by default.
+ * @config
+ */
+private static final String PAR_BULK = "bulk";
+
 
 //--------------------------------------------------------------------------
 //Fields
@@ -101,6 +116,12 @@ private final int maxsize;
 /** New nodes initializers */
 private final NodeInitializer[] inits;
 
+/** value of {@value #PAR_RECYCLE} */
+private final boolean recycle;
+
+/** value of {@value #PAR_BULK} */
+private final boolean bulk;
+
 
 //--------------------------------------------------------------------------
 // Initialization
@@ -121,6 +142,8 @@ public OscillatingNetwork(String prefix)
 			prefix + "." + PAR_MAX,
 			Integer.MAX_VALUE);
 	minsize = Configuration.getInt(prefix + "." + PAR_MIN, 0);
+	recycle = Configuration.contains(prefix + "." + PAR_RECYCLE);
+	bulk = Configuration.contains(prefix + "." + PAR_BULK);
 
 	Object[] tmp = Configuration.getInstanceArray(prefix + "." + PAR_INIT);
 	inits = new NodeInitializer[tmp.length];
@@ -137,20 +160,28 @@ public OscillatingNetwork(String prefix)
 /**
  * Adds n nodes to the network. Extending classes can implement any algorithm to
  * do that. The default algorithm adds the given number of nodes after calling
- * all the configured initializers on them.
+ * all the configured initializers on them, one by one or, if
+ * {@value #PAR_BULK} is set, all together.
  * 
  * @param n
  *          the number of nodes to add, must be non-negative.
  */
 protected void add(int n)
 {
+	Node[] nodes = bulk ? new Node[n] : null;
 	for (int i = 0; i < n; ++i) {
-		Node newnode = (Node) Network.prototype.clone();
+		Node newnode = recycle ? Network.newNode() :
+			(Node) Network.prototype.clone();
 		for (int j = 0; j < inits.length; ++j) {
 			inits[j].initialize(newnode);
 		}
-		Network.add(newnode);
+		if (bulk)
+			nodes[i] = newnode;
+		else
+			Network.add(newnode);
 	}
+	if (bulk)
+		Network.add(nodes);
 }
 
 // ------------------------------------------------------------------
@@ -158,13 +189,17 @@ protected void add(int n)
 /**
  * Removes n nodes from the network. Extending classes can implement any
  * algorithm to do that. The default algorithm removes <em>random</em>
- * nodes <em>permanently</em> simply by calling {@link Network#remove(int)}.
+ * nodes <em>permanently</em> using {@link Network#removeRandom}, which is
+ * equivalent to calling {@link Network#remove(int)} with random indexes.
+ * If {@value #PAR_RECYCLE} is set, the removed nodes are recycled.
  * @param n the number of nodes to remove
  */
 protected void remove(int n)
 {
-	for (int i = 0; i < n; ++i) {
-		Network.remove(CommonState.r.nextInt(Network.size()));
+	Node[] removed = Network.removeRandom(n);
+	if (recycle) {
+		for (int i = 0; i < removed.length; ++i)
+			Network.recycle(removed[i]);
 	}
 }
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import java.io.*;
+import peersim.Simulator;
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.edsim.EDSimulator;
+
+/**
+ * Saves the state of the simulation in a file using {@link Checkpoint}.
+ * In event driven simulations the event queue is saved as well (except the
+ * control events). The file can be loaded by {@link LoadCheckpoint} to
+ * start other experiments from the saved state. Typically it is scheduled
+ * once, e.g. after the warm-up of an overlay, using parameter
+ * <code>at</code> (see {@link Scheduler}). If it is executed more than
+ * once, the file is overwritten.
+ */
+public class SaveCheckpoint implements Control
+{
+
+// ========================= fields =================================
+// ==================================================================
+
+/**
+ * The file to write the checkpoint to. If the name ends with ".gz",
+ * the file is compressed.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/** The name of this component in the configuration */
+private final String name;
+
+/** The file to write */
+private final String file;
+
+// ==================== initialization ==============================
+// ==================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public SaveCheckpoint(String prefix)
+{
+	name = prefix;
+	file = Configuration.getString(prefix + "." + PAR_FILE);
+}
+
+// ===================== methods ====================================
+// ==================================================================
+
+/**
+ * Writes the checkpoint.
+ * @return always false
+ */
+public boolean execute()
+{
+	try {
+		ObjectOutputStream out = Checkpoint.openOutput(file);
+		Checkpoint.writeState(out);
+		out.writeBoolean(Simulator.getSimID() == Simulator.EDSIM);
+		if (Simulator.getSimID() == Simulator.EDSIM)
+			EDSimulator.writeEvents(out);
+		out.close();
+	} catch (IOException e) {
+		throw new RuntimeException(name + ": unable to write " + file, e);
+	}
+	System.err.println(name + ": checkpoint written to " + file
+			+ " at time " + CommonState.getTime());
+	return false;
+}
+
+}
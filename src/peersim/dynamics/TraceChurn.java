@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.EDSimulator;
+
+/**
+ * Replays the joins and leaves of peers recorded in a trace file. Each
+ * record of the trace contains a timestamp, the identifier of a peer and
+ * whether the peer joins or leaves; records must be sorted by timestamp.
+ * When a peer joins, a new node is added to the network and the configured
+ * initializers are run on it; when it leaves, its node is removed. The
+ * nodes that are in the network when the replay starts are not affected.
+ * <p>
+ * The trace is read incrementally, so memory does not depend on the length
+ * of the trace, only on the number of peers that are online at the same
+ * time. Two formats are supported, optionally compressed with gzip if the
+ * file name ends with ".gz":
+ * <ul>
+ * <li>text: one record per line in the form <code>time peer type</code>,
+ * separated by commas or white space, where type is <code>join</code> or
+ * <code>leave</code> (only the first letter is checked, and
+ * <code>1</code> and <code>0</code> are also accepted); empty lines and
+ * lines starting with "#" are ignored;</li>
+ * <li>binary: the magic string "PSTRACE" padded with zeros to 8 bytes and
+ * the int format version, followed by records of 17 bytes: the double
+ * timestamp, the long peer identifier and a byte that is 1 for joins and
+ * 0 for leaves (all big-endian). The {@link #main} method converts text
+ * traces to this format, which is much faster to read.</li>
+ * </ul>
+ * The timestamp of a record, multiplied by {@value #PAR_SCALE} and rounded
+ * down, gives the simulation time of the record. In cycle driven
+ * simulations this control should be executed in each cycle: each
+ * execution applies all the records up to the current cycle. In event
+ * driven simulations it has to be executed only once, typically by
+ * setting <code>at 0</code>: after that it schedules itself exactly at the
+ * time of the records, using {@link EDSimulator#addControl}.
+ */
+public class TraceChurn implements Control
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The trace file.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * Config parameter which gives the prefix of node initializers, that are
+ * applied on the nodes of the joining peers, in the same way as in
+ * {@link DynamicNetwork}.
+ * @config
+ */
+private static final String PAR_INIT = "init";
+
+/**
+ * The factor the timestamps of the trace are multiplied with to obtain
+ * simulation times. For example, if the trace is in seconds and the
+ * simulation time unit is the millisecond, it should be 1000. Defaults to 1.
+ * @config
+ */
+private static final String PAR_SCALE = "timescale";
+
+/**
+ * If defined, the nodes of leaving peers are recycled, see
+ * {@link DynamicNetwork}. Not set by default.
+ * @config
+ */
+private static final String PAR_RECYCLE = "recycle";
+
+// --------------------------------------------------------------------------
+// Constants
+// --------------------------------------------------------------------------
+
+/** The magic string at the beginning of binary traces */
+private static final byte[] MAGIC = { 'P', 'S', 'T', 'R', 'A', 'C', 'E', 0 };
+
+/** The version of the binary format */
+private static final int VERSION = 1;
+
+/** Size of the I/O buffers */
+private static final int BUFSIZE = 1 << 16;
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The prefix of this control, for error messages */
+private final String name;
+
+/** value of {@value #PAR_SCALE} */
+private final double scale;
+
+/** value of {@value #PAR_RECYCLE} */
+private final boolean recycle;
+
+/** node initializers to apply on the newly added nodes */
+private final NodeInitializer[] inits;
+
+/** The trace, null if the replay has finished */
+private TraceReader trace;
+
+/** The nodes of the peers that are online */
+private final Map<Long, Peer> online = new HashMap<Long, Peer>();
+
+/** Whether the event driven replay has been started */
+private boolean started = false;
+
+/** Applies the records due now and schedules itself for the next ones */
+private final Control replay = new Control() {
+	public boolean execute()
+	{
+		apply(CommonState.getTime());
+		if (trace != null)
+			EDSimulator.addControl(time() - CommonState.getTime(), this);
+		return false;
+	}
+};
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters and opens
+ * the trace. Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public TraceChurn(String prefix)
+{
+	name = prefix;
+	scale = Configuration.getDouble(prefix + "." + PAR_SCALE, 1);
+	recycle = Configuration.contains(prefix + "." + PAR_RECYCLE);
+	Object[] tmp = Configuration.getInstanceArray(prefix + "." + PAR_INIT);
+	inits = new NodeInitializer[tmp.length];
+	for (int i = 0; i < tmp.length; ++i) {
+		inits[i] = (NodeInitializer) tmp[i];
+	}
+	String file = Configuration.getString(prefix + "." + PAR_FILE);
+	try {
+		trace = new TraceReader(file);
+		if (!trace.next()) {
+			trace.close();
+			trace = null;
+		}
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+				e.getMessage());
+	}
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * In cycle driven simulations, applies the records whose time is not later
+ * than the current time. In event driven simulations, starts the replay
+ * the first time it is called and does nothing afterwards.
+ * @return always false
+ */
+public boolean execute()
+{
+	if (!EDSimulator.isConfigurationEventDriven()) {
+		apply(CommonState.getTime());
+	} else if (!started) {
+		started = true;
+		replay.execute();
+	}
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/** The simulation time of the current record */
+private long time()
+{
+	return (long) Math.floor(trace.time * scale);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Applies all the records whose simulation time is not later than the given
+ * time.
+ */
+private void apply(long now)
+{
+	try {
+		while (trace != null && time() <= now) {
+			if (trace.join)
+				join(trace.peer);
+			else
+				leave(trace.peer);
+			double last = trace.time;
+			if (!trace.next()) {
+				trace.close();
+				trace = null;
+			} else if (trace.time < last) {
+				throw new IllegalStateException(name + ": record "
+						+ trace.count + " of the trace is not sorted");
+			}
+		}
+	} catch (IOException e) {
+		throw new RuntimeException(name + ": " + e.getMessage(), e);
+	}
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Adds a node for the given peer, unless it is online already. A peer whose
+ * node has been removed by other components is not online.
+ */
+private void join(long peer)
+{
+	Long key = Long.valueOf(peer);
+	Peer p = online.get(key);
+	if (p != null && p.inNetwork())
+		return;
+	Node node = recycle ? Network.newNode() : (Node) Network.prototype.clone();
+	for (int j = 0; j < inits.length; ++j) {
+		inits[j].initialize(node);
+	}
+	Network.add(node);
+	online.put(key, new Peer(node));
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Removes the node of the given peer, if it is online and it has not been
+ * removed by other components.
+ */
+private void leave(long peer)
+{
+	Peer p = online.remove(Long.valueOf(peer));
+	if (p == null || !p.inNetwork())
+		return;
+	Network.remove(p.node.getIndex());
+	if (recycle)
+		Network.recycle(p.node);
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * The node of an online peer, with the ID it had when it was added, since
+ * the node object may have been removed and reused for another node by
+ * other components (see {@link Network#recycle}).
+ */
+private static class Peer
+{
+	final Node node;
+
+	final long id;
+
+	Peer(Node node)
+	{
+		this.node = node;
+		this.id = node.getID();
+	}
+
+	/**
+	 * Returns true if the node is still in the network as the node added for
+	 * this peer. Removed nodes have a negative index.
+	 */
+	boolean inNetwork()
+	{
+		final int index = node.getIndex();
+		return node.getID() == id && index >= 0 && index < Network.size()
+				&& Network.get(index) == node;
+	}
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Converts a text trace (given as the first argument, or read from the
+ * standard input) to the binary format, which is written to the second
+ * argument (or the standard output). Output files ending with ".gz" are
+ * compressed.
+ */
+public static void main(String[] args) throws IOException
+{
+	TraceReader in = new TraceReader(args.length > 0 ? args[0] : null);
+	OutputStream os = args.length > 1 ? new FileOutputStream(args[1])
+			: (OutputStream) System.out;
+	if (args.length > 1 && args[1].endsWith(".gz"))
+		os = new GZIPOutputStream(os, BUFSIZE);
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os,
+			BUFSIZE));
+	out.write(MAGIC);
+	out.writeInt(VERSION);
+	while (in.next()) {
+		out.writeDouble(in.time);
+		out.writeLong(in.peer);
+		out.writeByte(in.join ? 1 : 0);
+	}
+	in.close();
+	out.close();
+	System.err.println("TraceChurn: converted " + in.count + " records");
+}
+
+// ==========================================================================
+// Reader
+// ==========================================================================
+
+/**
+ * Reads a trace record by record, detecting its format.
+ */
+private static class TraceReader
+{
+
+/** The binary input, or null if the trace is text */
+private DataInputStream data;
+
+/** The text input, or null if the trace is binary */
+private BufferedReader text;
+
+/** The source, for error messages */
+private final String file;
+
+/** The fields of the current record */
+double time;
+
+long peer;
+
+boolean join;
+
+/** The number of records read */
+long count = 0;
+
+/**
+ * Opens the given file, or the standard input if the name is null.
+ */
+TraceReader(String file) throws IOException
+{
+	this.file = file == null ? "stdin" : file;
+	InputStream is = file == null ? System.in : new FileInputStream(file);
+	if (file != null && file.endsWith(".gz"))
+		is = new GZIPInputStream(is, BUFSIZE);
+	is = new BufferedInputStream(is, BUFSIZE);
+	is.mark(MAGIC.length);
+	byte[] magic = new byte[MAGIC.length];
+	int len = 0, r;
+	while (len < magic.length &&
+			(r = is.read(magic, len, magic.length - len)) > 0)
+		len += r;
+	if (Arrays.equals(magic, MAGIC)) {
+		data = new DataInputStream(is);
+		if (data.readInt() != VERSION)
+			throw new IOException(this.file + ": unsupported trace version");
+	} else {
+		is.reset();
+		text = new BufferedReader(new InputStreamReader(is, "UTF-8"),
+				BUFSIZE);
+	}
+}
+
+/**
+ * Reads the next record.
+ * @return false if the end of the trace has been reached
+ */
+boolean next() throws IOException
+{
+	if (data != null) {
+		try {
+			time = data.readDouble();
+		} catch (EOFException e) {
+			return false;
+		}
+		peer = data.readLong();
+		join = data.readByte() != 0;
+		count++;
+		return true;
+	}
+	String line;
+	while ((line = text.readLine()) != null) {
+		line = line.trim();
+		if (line.length() == 0 || line.startsWith("#"))
+			continue;
+		StringTokenizer st = new StringTokenizer(line, ", \t");
+		try {
+			time = Double.parseDouble(st.nextToken());
+			peer = Long.parseLong(st.nextToken());
+			char type = Character.toLowerCase(st.nextToken().charAt(0));
+			if (type == 'j' || type == '1')
+				join = true;
+			else if (type == 'l' || type == '0')
+				join = false;
+			else
+				throw new IOException(file + ": invalid type in line '"
+						+ line + "'");
+		} catch (NoSuchElementException e) {
+			throw new IOException(file + ": missing field in line '" + line
+					+ "'");
+		} catch (NumberFormatException e) {
+			throw new IOException(file + ": invalid number in line '" + line
+					+ "'");
+		}
+		count++;
+		return true;
+	}
+	return false;
+}
+
+void close() throws IOException
+{
+	if (data != null)
+		data.close();
+	else
+		text.close();
+}
+
+}
+
+}
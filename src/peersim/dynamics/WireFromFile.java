@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.util.StringTokenizer;
+import peersim.graph.CSRGraph;
 import peersim.graph.Graph;
 import peersim.core.*;
 import peersim.config.Configuration;
@@ -37,6 +38,11 @@ import peersim.config.Configuration;
 * All node IDs larger than the actual network size will be discarded, but
 * it does not trigger an error. Lines starting with a "#" character and
 * empty lines are ignored.
+* <p>
+* The file can also be in the binary format of {@link CSRGraph} (which is
+* recognized automatically), that can be produced from the text format with
+* {@link peersim.graph.GraphIO#main}. This file is memory mapped instead of
+* being parsed, which is much faster for large graphs.
 */
 public class WireFromFile extends WireGraph {
 
@@ -90,11 +96,17 @@ public WireFromFile(String prefix) {
 * (IDs start from 0) followed by a list of neighbors, separated by whitespace.
 * All node IDs larger than the actual network size will be discarded, but
 * it does not trigger an error. Lines starting with a "#" character and
-* empty lines are ignored.
+* empty lines are ignored. Files in the format of {@link CSRGraph} are
+* also accepted.
 */
 public void wire(Graph g) {
 try
 {
+	if( CSRGraph.isCSR(file) )
+	{
+		wireCSR(g);
+		return;
+	}
 	FileReader fr = new FileReader(file);
 	LineNumberReader lnr = new LineNumberReader(fr);
 	String line;
@@ -133,4 +145,34 @@ catch( IOException e )
 }
 }
 
+// -------------------------------------------------------------------
+
+/**
+* Wires the graph from a file in the format of {@link CSRGraph}, with the
+* same rules as the text format.
+*/
+private void wireCSR(Graph g) throws IOException {
+
+	CSRGraph csr = new CSRGraph(file);
+	final int size = Network.size();
+	boolean wasOutOfRange = csr.size() > size;
+	final int n = Math.min(csr.size(), size);
+	for(int from=0; from<n; ++from)
+	{
+		final int degree = Math.min(k, csr.degree(from));
+		for(int i=0; i<degree; ++i)
+		{
+			final int to = csr.getNeighbor(from,i);
+			if( to < 0 || to >= size )
+				wasOutOfRange = true;
+			else
+				g.setEdge(from,to);
+		}
+	}
+
+	if( wasOutOfRange )
+		System.err.println("WireFromFile warning: in "+file+" "+
+			"some nodes were out of range and so ignored.");
+}
+
 }
@@ -19,6 +19,7 @@
 package peersim.dynamics;
 
 import peersim.graph.Graph;
+import peersim.graph.GraphFactory;
 import peersim.core.*;
 import peersim.config.Configuration;
 
@@ -66,6 +67,18 @@ private static final String PAR_UNDIR = "undir";
 */
 private static final String PAR_UNDIR_ALT = "undirected";
 
+/**
+ * If this config property is defined, and the wiring method supports it,
+ * the edges are generated in bulk by {@link #generate}, using
+ * {@link Network#getThreads} threads, and then added to the protocols in
+ * one pass. The generated graph follows the same model, and depends only
+ * on the random seed, not on the number of threads; however, it is
+ * different from the graph generated without this property. Not defined by
+ * default.
+ * @config
+ */
+private static final String PAR_BULK = "bulk";
+
 // --------------------------------------------------------------------------
 // Fields
 // --------------------------------------------------------------------------
@@ -82,6 +95,9 @@ private final boolean pack;
 /** If true, edges are added in an undirected fashion.*/
 public final boolean undir;
 
+/** If true, edges are generated by {@link #generate} if supported */
+private final boolean bulk;
+
 /**
 * If set (not null), this is the graph to wire. If null, the current overlay
 * is wired each time {@link #execute} is called, as specified by {@value
@@ -108,6 +124,7 @@ protected WireGraph(String prefix) {
 	pack = Configuration.contains(prefix + "." + PAR_PACK);
 	undir = (Configuration.contains(prefix + "." + PAR_UNDIR) |
 		Configuration.contains(prefix + "." + PAR_UNDIR_ALT));
+	bulk = Configuration.contains(prefix + "." + PAR_BULK);
 }
 
 
@@ -133,7 +150,12 @@ public final boolean execute() {
 	else gr=g;
 
 	if(gr.size()==0) return false;
-	wire(gr);
+	int[][] out = null;
+	if( bulk ) out = generate(gr.size(), CommonState.r.nextLong(),
+		Network.getThreads());
+	if( out == null ) wire(gr);
+	else if( g == null ) link(out);
+	else GraphFactory.wire(gr, out);
 	
 	if( g==null && pack)
 	{
@@ -154,5 +176,44 @@ public final boolean execute() {
 * be implemented by extending classes */
 public abstract void wire(Graph g);
 
+//--------------------------------------------------------------------------
+
+/**
+* Generates the edges to be added as the arrays of out-neighbors of each
+* node, for example by one of the bulk generators of {@link GraphFactory}.
+* Called instead of {@link #wire} if {@value #PAR_BULK} is defined. This
+* implementation returns null, which means that bulk generation is not
+* supported and {@link #wire} is called instead.
+* @param n the number of nodes
+* @param seed the seed of the random choices
+* @param threads the number of threads that can be used
+*/
+protected int[][] generate(int n, long seed, int threads) {
+
+	return null;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Adds the given edges to the protocol, node by node, without going through
+* {@link OverlayGraph}.
+*/
+private void link(int[][] out) {
+
+	for (int i = 0; i < out.length; i++)
+	{
+		final Node n = Network.get(i);
+		final Linkable link = (Linkable) n.getProtocol(pid);
+		final int[] nb = out[i];
+		for (int j = 0; j < nb.length; j++)
+		{
+			final Node m = Network.get(nb[j]);
+			link.addNeighbor(m);
+			if (undir) ((Linkable) m.getProtocol(pid)).addNeighbor(n);
+		}
+	}
+}
+
 }
 
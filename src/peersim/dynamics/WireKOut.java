@@ -79,4 +79,12 @@ public void wire(Graph g) {
 	GraphFactory.wireKOut(g,k,CommonState.r);
 }
 
+//--------------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#kOut}. */
+protected int[][] generate(int n, long seed, int threads) {
+
+	return GraphFactory.kOut(n,k,seed,threads);
+}
+
 }
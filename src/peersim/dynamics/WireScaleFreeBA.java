@@ -48,6 +48,15 @@ public class WireScaleFreeBA extends WireGraph {
  */
 private static final String PAR_DEGREE = "k";
 
+/**
+ * The initial attractiveness: the probability that a node is chosen as a
+ * target is proportional to its degree plus this value, which must be larger
+ * than -1. Defaults to 0, that is, the BA model.
+ * Passed to {@link GraphFactory#wireScaleFreeBA(Graph,int,double,java.util.Random)}.
+ * @config
+ */
+private static final String PAR_ATTRACTIVENESS = "attractiveness";
+
 
 // =================== fields ============================================
 // =======================================================================
@@ -55,6 +64,9 @@ private static final String PAR_DEGREE = "k";
 /** Parameter of the BA model. */
 private int k;
 
+/** The initial attractiveness. */
+private final double a;
+
 // ===================== initialization ==================================
 // =======================================================================
 
@@ -67,6 +79,10 @@ public WireScaleFreeBA(String prefix)
 {
 	super(prefix);
 	k = Configuration.getInt(prefix + "." + PAR_DEGREE);
+	a = Configuration.getDouble(prefix + "." + PAR_ATTRACTIVENESS, 0);
+	if (!(a > -1))
+		throw new IllegalParameterException(prefix + "." + PAR_ATTRACTIVENESS,
+				"should be larger than -1");
 }
 
 
@@ -77,8 +93,16 @@ public WireScaleFreeBA(String prefix)
 /** calls {@link GraphFactory#wireScaleFreeBA}.*/
 public void wire(Graph g) {
 	
-	GraphFactory.wireScaleFreeBA(g,k,CommonState.r );
+	GraphFactory.wireScaleFreeBA(g,k,a,CommonState.r );
 }
 
+// -----------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#scaleFreeBA}, if the attractiveness is 0. */
+protected int[][] generate(int n, long seed, int threads) {
+
+	if (a != 0) return null;
+	return GraphFactory.scaleFreeBA(n,k,seed,threads);
 }
 
+}
@@ -88,5 +88,12 @@ public void wire(Graph g) {
 	GraphFactory.wireWS(g,k,beta,CommonState.r);
 }
 
+// -------------------------------------------------------------------
+
+/** Calls {@link GraphFactory#ws}. */
+protected int[][] generate(int n, long seed, int threads) {
+
+	return GraphFactory.ws(n,k,beta,seed,threads);
 }
 
+}
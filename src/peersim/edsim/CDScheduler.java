@@ -72,6 +72,20 @@ private static final String PAR_PROTOCOL = "protocol";
 */
 private static final String PAR_RNDSTART = "randstart";
 
+/**
+* If set, the protocols are executed through a {@link CycleWheel}
+* instead of a {@link NextCycleEvent} per node: the nodes that are
+* executed at the same time share a single event, so the event queue holds
+* at most one event per time unit of the cycle instead of one per node. It
+* cannot be used together with {@value #PAR_NEXTC}, since the cycle length
+* must be constant. The nodes of the same time are executed in a batch,
+* and the random numbers drawn by the event queue to break ties are not
+* drawn, so the simulation is not the same as without this parameter. The
+* batches are not saved in checkpoints of the event queue.
+* @config
+*/
+private static final String PAR_WHEEL = "wheel";
+
 /**
 * Contains the scheduler objects for all {@link CDProtocol}s defined in the
 * configuration. The length of the array is the number of protocols defined,
@@ -86,6 +100,10 @@ private final int[] pid;
 
 private final boolean randstart;
 
+/** The wheels executing the protocols, or null if {@value #PAR_WHEEL} is
+* not set */
+private final CycleWheel[] wheel;
+
 // =============================== initialization ======================
 // =====================================================================
 
@@ -132,6 +150,16 @@ public CDScheduler(String n) {
 	}
 
 	randstart = Configuration.contains(n+"."+PAR_RNDSTART);
+	if( Configuration.contains(n+"."+PAR_WHEEL) )
+	{
+		if( Configuration.contains(n+"."+PAR_NEXTC) )
+			throw new IllegalParameterException(n+"."+PAR_WHEEL,
+				"Cannot be used together with \""+PAR_NEXTC+"\"");
+		wheel = new CycleWheel[pid.length];
+		for(int i=0; i<pid.length; ++i)
+			wheel[i] = new CycleWheel(pid[i], sch[pid[i]]);
+	}
+	else wheel = null;
 }
 
 
@@ -191,14 +219,19 @@ public void initialize(Node n) {
 	final long time = CommonState.getTime();
 	for(int i=0; i<pid.length; ++i)
 	{
+		final long delay = firstDelay(sch[pid[i]].step);
+		final long nexttime = Math.max(time,sch[pid[i]].from)+delay;
+		if( nexttime >= sch[pid[i]].until ) continue;
+		if( wheel != null )
+		{
+			wheel[i].add(n, nexttime);
+			continue;
+		}
+
 		Object nceclone=null;
 		try { nceclone = nce[i].clone(); }
 		catch(CloneNotSupportedException e) {} //cannot possibly happen
-		
-		final long delay = firstDelay(sch[pid[i]].step);
-		final long nexttime = Math.max(time,sch[pid[i]].from)+delay;
-		if( nexttime < sch[pid[i]].until )
-			EDSimulator.add(nexttime-time, nceclone, n, pid[i]);
+		EDSimulator.add(nexttime-time, nceclone, n, pid[i]);
 	}
 }
 
@@ -18,6 +18,7 @@
 
 package peersim.edsim;
 
+import peersim.core.CommonState;
 import peersim.core.Control;
 import peersim.core.Scheduler;
 
@@ -64,6 +65,8 @@ public ControlEvent(Control control, Scheduler scheduler, int order)
 	this.control = control;
 	this.order = order;
 	this.scheduler = scheduler;
+	// the simulation might be resumed from a checkpoint
+	scheduler.skipTo(CommonState.getTime());
 	long next = scheduler.getNext();
 	if( next>=0 ) EDSimulator.addControlEvent(next, order, this);
 }
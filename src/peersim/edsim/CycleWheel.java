@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.util.*;
+
+import peersim.core.*;
+import peersim.cdsim.CDProtocol;
+
+/**
+* Executes a cycle based protocol with a constant cycle length on many nodes
+* using few events. The nodes are grouped into slots by the time of their
+* next execution, and each slot is a single event in the queue of
+* {@link EDSimulator}: when it is executed, it calls
+* {@link CDProtocol#nextCycle} on all its nodes and schedules itself one
+* cycle later. Since the nodes that are scheduled at the same time modulo the
+* cycle length share the slot, the number of events per cycle is at most the
+* cycle length, irrespective of the size of the network.
+* <p>
+* It implements the same schedule as {@link NextCycleEvent}: nodes that
+* are not up when their slot is executed are not executed any more.
+* However, the nodes of a slot are executed one after the other, without
+* interleaving other events of the same time, and the slots are control
+* events, so they are not saved by {@link EDSimulator#writeEvents}.
+* @see CDScheduler
+*/
+class CycleWheel {
+
+// ============================== fields ==============================
+// ====================================================================
+
+/** The protocol executed */
+private final int pid;
+
+/** The cycle length */
+private final long step;
+
+/** The time from which the protocol is no longer executed */
+private final long until;
+
+/** The scheduled slots, by the time of their execution */
+private final Map<Long,Slot> slots = new HashMap<Long,Slot>();
+
+// =============================== initialization ======================
+// =====================================================================
+
+/**
+* @param pid the protocol to execute
+* @param schedule the schedule of the protocol, defining the cycle length
+* and the end of the executions
+*/
+CycleWheel(int pid, Scheduler schedule) {
+
+	this.pid = pid;
+	this.step = schedule.step;
+	this.until = schedule.until;
+}
+
+// ========================== methods ==================================
+// =====================================================================
+
+/**
+* Schedules the first execution of the protocol at the given node for the
+* given time, which must not be earlier than the current time.
+*/
+void add(Node node, long time) {
+
+	Slot slot = slots.get(time);
+	if( slot == null )
+	{
+		slot = new Slot(time);
+		slots.put(time,slot);
+		EDSimulator.addControl(time-CommonState.getTime(),slot);
+	}
+	slot.add(node);
+}
+
+// ========================== slots ====================================
+// =====================================================================
+
+/**
+* The nodes that are executed at the same time.
+*/
+private class Slot implements Control {
+
+/** The time of the next execution */
+private long time;
+
+private Node[] nodes = new Node[8];
+
+private int size = 0;
+
+Slot(long time) { this.time = time; }
+
+void add(Node node) {
+
+	if( size == nodes.length ) nodes = Arrays.copyOf(nodes,2*size);
+	nodes[size++] = node;
+	Network.hold(node);
+}
+
+/**
+* Executes the protocol on the nodes that are up, and schedules them for
+* the next cycle.
+*/
+public boolean execute() {
+
+	slots.remove(time);
+	int j = 0;
+	for(int i=0; i<size; ++i)
+	{
+		final Node node = nodes[i];
+		if( !node.isUp() )
+		{
+			Network.release(node);
+			continue;
+		}
+		CommonState.setNode(node);
+		CommonState.setPid(pid);
+		((CDProtocol)node.getProtocol(pid)).nextCycle(node,pid);
+		nodes[j++] = node;
+	}
+	Arrays.fill(nodes,j,size,null);
+	size = j;
+
+	// check like this to deal with overflow
+	if( size == 0 || until-time <= step )
+	{
+		for(int i=0; i<size; ++i) Network.release(nodes[i]);
+		return false;
+	}
+	time += step;
+	Slot other = slots.get(time);
+	if( other != null )
+	{
+		// nodes added meanwhile for the next cycle, join them
+		for(int i=0; i<size; ++i)
+		{
+			other.add(nodes[i]);
+			Network.release(nodes[i]);
+		}
+	}
+	else
+	{
+		slots.put(time,this);
+		EDSimulator.addControl(step,this);
+	}
+	return false;
+}
+
+}
+
+}
@@ -18,6 +18,7 @@
 
 package peersim.edsim;
 
+import java.io.*;
 import java.util.*;
 
 import peersim.config.*;
@@ -181,7 +182,11 @@ private static void runInitializers() {
 	{
 		System.err.println(
 		"- Running initializer " +names[i]+ ": " + inits[i].getClass());
-		((Control)inits[i]).execute();
+		if( inits[i] instanceof ParallelInitializer &&
+				Network.getThreads() > 1 )
+			Network.initialize((ParallelInitializer)inits[i]);
+		else
+			((Control)inits[i]).execute();
 	}
 }
 
@@ -260,6 +265,7 @@ private static boolean executeNext() {
 		" at time "+CommonState.getTime());
 		return true;
 	}
+	if (ev.node != null) Network.release(ev.node);
 	
 	long time = ev.time;
 	if (time >= nextlog)
@@ -281,6 +287,9 @@ private static boolean executeNext() {
 	int pid = ev.pid;
 	if (ev.node == null)
 	{
+		// one-shot control scheduled by addControl
+		if (ev.event instanceof Control)
+			return ((Control) ev.event).execute();
 		// might be control event; handled through a special method
 		ControlEvent ctrl = null;
 		try {
@@ -372,6 +381,67 @@ public static void nextExperiment()
 
 //---------------------------------------------------------------------
 
+/**
+ * Writes the events in the queue, except control events, using
+ * {@link Checkpoint#writeObject}. The queue must be serializable, as
+ * {@link Heap} is.
+ */
+public static void writeEvents(ObjectOutputStream out) throws IOException
+{
+	Checkpoint.writeObject(out, heap);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Replaces the event queue with the one written by {@link #writeEvents}.
+ * Any event scheduled before this call is lost, so the queue should be
+ * restored before scheduling other events.
+ */
+public static void readEvents(ObjectInputStream in)
+throws IOException, ClassNotFoundException
+{
+	PriorityQ q = (PriorityQ) Checkpoint.readObject(in);
+	if( q.maxTime() < endtime )
+		throw new IllegalParameterException(PAR_ENDTIME,
+			"End time is too large: restored event queue only"+
+			" supports "+q.maxTime());
+	heap = q;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Schedules a single execution of the given control after the given number
+ * of time units. Unlike the configured controls, the control is not
+ * executed again unless it schedules itself again, which allows controls
+ * to follow their own timing (e.g. the timestamps of a trace). At the same
+ * time it is executed after the configured controls. It can also be called
+ * by initializers, before the configured controls are loaded. Like all
+ * control events, it is not saved by {@link #writeEvents}.
+ * 
+ * @param delay 
+ *   The number of time units before the control is executed.
+ *   Has to be non-negative.
+ * @param control 
+ *   The control to execute
+ */
+public static void addControl(long delay, Control control)
+{
+	if (delay < 0)
+		throw new IllegalArgumentException("Control "+control+
+			" is scheduled with a negative delay: "+delay);
+	long time = CommonState.getTime();
+	// initializers run before the controls are loaded
+	final int n = controls != null ? controls.length :
+		Configuration.getNames(PAR_CTRL).length;
+	if( endtime - time > delay ) // check like this to deal with overflow 
+		heap.add(time+delay, control, null, (byte) 0,
+			Math.min(n, heap.maxPriority()));
+}
+
+//---------------------------------------------------------------------
+
 /**
  * Adds a new event to be scheduled, specifying the number of time units
  * of delay, and the node and the protocol identifier to which the event
@@ -400,7 +470,10 @@ public static void add(long delay, Object event, Node node, int pid)
 	
 	long time = CommonState.getTime();
 	if( endtime - time > delay ) // check like this to deal with overflow 
+	{
+		if (node != null) Network.hold(node);
 		heap.add(time+delay, event, node, (byte) pid);
+	}
 }
 
 }
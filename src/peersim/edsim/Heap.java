@@ -18,6 +18,7 @@
 
 package peersim.edsim;
 
+import java.io.*;
 import peersim.core.Node;
 import peersim.core.CommonState;
 import peersim.config.Configuration;
@@ -30,7 +31,9 @@ import peersim.config.IllegalParameterException;
  *  @author Alberto Montresor
  *  @version $Revision: 1.10 $
  */
-public class Heap implements PriorityQ {
+public class Heap implements PriorityQ, Serializable {
+
+private static final long serialVersionUID = 1L;
 
 //--------------------------------------------------------------------------
 // Constants
@@ -63,22 +66,22 @@ private static final String PAR_SIZE = "size";
 // and based on some tests that I've done is not really much faster.
 
 /** Event component of the heap */
-private Object[] events;
+private transient Object[] events;
 
 /** Time component of the heap */
-private long[] times;
+private transient long[] times;
 
 /** Node component of the heap */
-private Node[] nodes;
+private transient Node[] nodes;
 
 /** Pid component of the heap */
-private byte[] pids;
+private transient byte[] pids;
 
 /** Number of elements */
-private int size;
+private transient int size;
 
 /** Singleton event object used to return (event, time, node, pid) tuples */
-private final Event ev = new Event();
+private transient Event ev = new Event();
 
 /** The number of bits reserved to order event with the same timestamp */
 private final int pbits;
@@ -175,8 +178,17 @@ public void add(long time, Object event, Node node, byte pid, long priority)
 		IllegalArgumentException("Time overflow: time="+time);
 //XXX should we test priority overflow? How much does it cost?
 	
-	time = (time << pbits) | priority;
-	
+	insert((time << pbits) | priority, event, node, pid);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Inserts an event with the given key, that is, the time shifted left
+ * by the priority bits and combined with the priority.
+ */
+private void insert(long time, Object event, Node node, byte pid) 
+{
 	size++;
 	int pos = size;
 	put(pos, time, event, node, pid);
@@ -235,6 +247,54 @@ public String toString()
 }
 
 
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the events of the heap, except control events (the events without
+ * a destination node), since controls are not part of the saved state:
+ * they are scheduled again by the engine. The events keep their priority,
+ * so ties are broken in the same way after reading the heap back.
+ */
+private void writeObject(ObjectOutputStream out) throws IOException
+{
+	out.defaultWriteObject();
+	int n = 0;
+	for (int i=0; i < size; i++) if (nodes[i] != null) n++;
+	out.writeInt(n);
+	for (int i=0; i < size; i++) {
+		if (nodes[i] == null) continue;
+		out.writeLong(times[i]);
+		out.writeObject(events[i]);
+		out.writeObject(nodes[i]);
+		out.writeByte(pids[i]);
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads a heap written by {@link #writeObject}.
+ */
+private void readObject(ObjectInputStream in)
+throws IOException, ClassNotFoundException
+{
+	in.defaultReadObject();
+	int n = in.readInt();
+	int capacity = 16;
+	while (capacity < n) capacity *= 2;
+	events = new Object[capacity];
+	times = new long[capacity];
+	nodes = new Node[capacity];
+	pids = new byte[capacity];
+	ev = new Event();
+	for (int i=0; i < n; i++) {
+		long time = in.readLong();
+		Object event = in.readObject();
+		Node node = (Node) in.readObject();
+		insert(time, event, node, in.readByte());
+	}
+}
+
 //--------------------------------------------------------------------------
 // Private methods
 //--------------------------------------------------------------------------
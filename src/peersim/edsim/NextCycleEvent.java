@@ -38,7 +38,9 @@ import peersim.cdsim.CDProtocol;
 *@see CDScheduler
 *@see CDProtocol
 */
-public class NextCycleEvent implements Cloneable {
+public class NextCycleEvent implements Cloneable, java.io.Serializable {
+
+private static final long serialVersionUID = 1L;
 
 
 // =============================== initialization ======================
@@ -27,6 +27,8 @@ import peersim.core.*;
 */
 public class RandNextCycle extends NextCycleEvent {
 
+private static final long serialVersionUID = 1L;
+
 
 // =============================== initialization ======================
 // =====================================================================
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+* A read-only directed graph stored in a file in compressed sparse row (CSR)
+* format, which is memory mapped instead of being loaded on the heap. The
+* file is written by {@link GraphIO#writeCSR}. Its format is the following
+* (all numbers are big-endian):
+* <ul>
+* <li>a header of {@value #HEADER} bytes: the magic string "PSCSR" padded
+* with zeros to 8 bytes, the int format version ({@value #VERSION}), the int
+* number of nodes n, the long number of edges m and 8 reserved bytes;</li>
+* <li>n+1 long offsets: the neighbors of node i are the targets from
+* offset[i] (inclusive) to offset[i+1] (exclusive);</li>
+* <li>m int targets.</li>
+* </ul>
+* Since both the offsets and the targets are aligned, graphs larger than
+* 2GB are mapped in several segments.
+*/
+public class CSRGraph implements Graph {
+
+
+// ====================== constants ================================
+// =================================================================
+
+/** The magic string at the beginning of the file, padded to 8 bytes */
+static final byte[] MAGIC = { 'P', 'S', 'C', 'S', 'R', 0, 0, 0 };
+
+/** The version of the file format */
+static final int VERSION = 1;
+
+/** The size of the header in bytes */
+static final int HEADER = 32;
+
+/** log2 of the size of a mapped segment */
+private static final int SEGMENT_BITS = 30;
+
+
+// ====================== fields ===================================
+// =================================================================
+
+private final int n;
+
+private final long m;
+
+/** The mapped segments of the file */
+private final MappedByteBuffer[] segments;
+
+
+// ====================== initialization ===========================
+// =================================================================
+
+
+/**
+* Maps the given file.
+* @throws IOException if the file cannot be read or it is not in CSR format
+*/
+public CSRGraph( String file ) throws IOException {
+
+	RandomAccessFile raf = new RandomAccessFile(file,"r");
+	try {
+		FileChannel channel = raf.getChannel();
+		if( !isCSR(channel) )
+			throw new IOException(file+" is not a CSR graph file");
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		channel.read(header,0);
+		header.flip();
+		header.position(MAGIC.length);
+		if( header.getInt() != VERSION )
+			throw new IOException(file+": unsupported CSR version");
+		n = header.getInt();
+		m = header.getLong();
+		long length = channel.size();
+		if( length != HEADER+8L*(n+1)+4L*m )
+			throw new IOException(file+": truncated CSR file");
+		segments = new MappedByteBuffer[
+			(int)((length+(1L<<SEGMENT_BITS)-1)>>>SEGMENT_BITS)];
+		for(int i=0; i<segments.length; ++i)
+		{
+			long start = ((long)i)<<SEGMENT_BITS;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+				start, Math.min(1L<<SEGMENT_BITS, length-start));
+		}
+	} finally {
+		raf.close(); // the mapping remains valid
+	}
+}
+
+
+// ======================= methods =================================
+// =================================================================
+
+
+/**
+* Returns true if the given channel starts with the CSR magic string. The
+* position of the channel is not changed.
+*/
+static boolean isCSR( FileChannel channel ) throws IOException {
+
+	ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+	channel.read(magic,0);
+	return Arrays.equals(magic.array(),MAGIC);
+}
+
+// -----------------------------------------------------------------
+
+/** Returns true if the given file is in CSR format. */
+public static boolean isCSR( String file ) throws IOException {
+
+	RandomAccessFile raf = new RandomAccessFile(file,"r");
+	try { return isCSR(raf.getChannel()); }
+	finally { raf.close(); }
+}
+
+// -----------------------------------------------------------------
+
+/** Returns the offset of the first neighbor of node i */
+private long offset( int i ) {
+
+	long pos = HEADER+8L*i;
+	return segments[(int)(pos>>>SEGMENT_BITS)].getLong(
+		(int)(pos&((1L<<SEGMENT_BITS)-1)));
+}
+
+// -----------------------------------------------------------------
+
+/** Returns the target with the given index */
+private int target( long index ) {
+
+	long pos = HEADER+8L*(n+1)+4L*index;
+	return segments[(int)(pos>>>SEGMENT_BITS)].getInt(
+		(int)(pos&((1L<<SEGMENT_BITS)-1)));
+}
+
+// -----------------------------------------------------------------
+
+/** Returns the number of edges */
+public long edges() { return m; }
+
+// -----------------------------------------------------------------
+
+/** Returns the j-th neighbor of node i, in the order of the file. */
+public int getNeighbor( int i, int j ) {
+
+	if( j < 0 || j >= degree(i) )
+		throw new IndexOutOfBoundsException("neighbor "+j+" of node "+i);
+	return target(offset(i)+j);
+}
+
+// -----------------------------------------------------------------
+
+public boolean isEdge( int i, int j ) {
+
+	final long end = offset(i+1);
+	for(long e=offset(i); e<end; ++e) if( target(e) == j ) return true;
+	return false;
+}
+
+// -----------------------------------------------------------------
+
+public Collection<Integer> getNeighbours( final int i ) {
+
+	final long start = offset(i);
+	final int degree = (int)(offset(i+1)-start);
+	return new AbstractList<Integer>() {
+		public Integer get(int j) {
+			if( j < 0 || j >= degree )
+				throw new IndexOutOfBoundsException();
+			return target(start+j);
+		}
+		public int size() { return degree; }
+	};
+}
+
+// -----------------------------------------------------------------
+
+/** Returns null always */
+public Object getNode( int i ) { return null; }
+
+// -----------------------------------------------------------------
+
+/** Returns null always */
+public Object getEdge( int i, int j ) { return null; }
+
+// -----------------------------------------------------------------
+
+public int size() { return n; }
+
+// -----------------------------------------------------------------
+
+/** Returns always true */
+public boolean directed() { return true; }
+
+// -----------------------------------------------------------------
+
+/** Not supported */
+public boolean setEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// -----------------------------------------------------------------
+
+/** Not supported */
+public boolean clearEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// -----------------------------------------------------------------
+
+public int degree( int i ) { return (int)(offset(i+1)-offset(i)); }
+
+}
@@ -20,6 +20,9 @@ package peersim.graph;
 
 import java.util.*;
 
+import peersim.util.ParallelFor;
+import peersim.util.SumTreeSampler;
+
 /**
 * Contains static methods for wiring certain kinds of graphs. The general
 * contract of all methods is that they accept any graph and add edges
@@ -278,6 +281,312 @@ public static Graph wireScaleFreeBA( Graph g, int k, Random r ) {
 	return g;
 }
 
+// -------------------------------------------------------------------
+
+/**
+* A generalization of {@link #wireScaleFreeBA(Graph,int,Random)} in which
+* the probability that a node is chosen as the target of a new edge is
+* proportional to its degree plus a constant a, the initial attractiveness
+* of the model of Dorogovtsev, Mendes and Samukhin
+* (<a href="http://arxiv.org/abs/cond-mat/0004434">
+http://arxiv.org/abs/cond-mat/0004434</a>). The degree is the number of
+* edges generated by the model the node is an end of, and the initial nodes
+* and the first added node are wired as in the BA model. Positive values
+* make the degree distribution less skewed, negative values more skewed.
+* If a is 0, the model is the BA model and
+* {@link #wireScaleFreeBA(Graph,int,Random)} is called. Otherwise the
+* weights are kept in a {@link SumTreeSampler}, so each target is drawn
+* in logarithmic time.
+* @param k the number of edges that are generated for each new node, also
+* the number of initial nodes (that have no edges).
+* @param a the initial attractiveness, must be larger than -1
+* @param r the randomness to be used
+* @return returns g for convenience
+*/
+public static Graph wireScaleFreeBA( Graph g, int k, double a, Random r ) {
+
+	if( a == 0 ) return wireScaleFreeBA(g,k,r);
+	if( !(a > -1) ) throw new IllegalArgumentException(
+		"a should be larger than -1: "+a);
+	final int nodes = g.size();
+	if( nodes <= k || k == 0 ) return g;
+
+	int[] degree = new int[nodes];
+	SumTreeSampler weights = new SumTreeSampler(nodes);
+	
+	// Add initial edges from k to 0,1,...,k-1
+	for(int i=0; i < k; i++)
+	{
+		g.setEdge(k,i);
+		degree[i] = 1;
+		weights.set(i,1+a);
+	}
+	degree[k] = k;
+	weights.set(k,k+a);
+	
+	int[] targets = new int[k];
+	for(int i=k+1; i < nodes; i++) // over the remaining nodes
+	{
+		// k distinct targets: drawn targets are removed until the end
+		for (int j=0; j < k; j++)
+		{
+			targets[j] = weights.remove(r);
+			g.setEdge(i,targets[j]);
+		}
+		for (int j=0; j < k; j++)
+		{
+			final int t = targets[j];
+			weights.set(t,++degree[t]+a);
+		}
+		degree[i] = k;
+		weights.set(i,k+a);
+	}
+
+	return g;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Adds the edges given as neighbor arrays to the given graph: for each
+* node i, edges (i,out[i][0]), (i,out[i][1]), etc. are added.
+* @param g the graph to be wired
+* @param out the neighbor arrays, as returned by the bulk generators of this
+* class
+* @return returns g for convenience
+*/
+public static Graph wire( Graph g, int[][] out ) {
+
+	for(int i=0; i<out.length; ++i)
+	for(int j=0; j<out[i].length; ++j) g.setEdge(i,out[i][j]);
+	return g;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates a random graph in bulk, without a {@link Graph}. The model is the
+* same as {@link #wireKOut}: k distinct out-neighbors are drawn for each node,
+* none of them being the node itself. The nodes are processed concurrently by
+* the given number of threads. The random numbers used for a node depend
+* only on the seed and the node, so the result is the same for any number of
+* threads (but different from that of {@link #wireKOut} with the same seed).
+* @param n the number of nodes
+* @param k the out-degree; if it is at least n, the graph is complete
+* @param seed determines the random choices
+* @param threads the number of threads to use
+* @return the array of the out-neighbors of each node
+*/
+public static int[][] kOut( final int n, int k, final long seed, int threads ) {
+
+	final int[][] out = new int[n][];
+	if( n < 2 )
+	{
+		for(int i=0; i<n; ++i) out[i] = new int[0];
+		return out;
+	}
+	final int kk = Math.min(k, n-1);
+	final int capacity = Integer.highestOneBit(Math.max(1,4*kk-1))<<1;
+	ParallelFor.run(n, threads, new ParallelFor.Range() {
+	public void run(int from, int to) {
+		// open addressing set of the neighbors already drawn
+		final int[] table = new int[capacity];
+		Arrays.fill(table,-1);
+		for(int i=from; i<to; ++i)
+		{
+			int[] nb = new int[kk];
+			long key = ((long)i)<<24;
+			for(int c=0; c<kk; )
+			{
+				int t = nextInt(seed, key++, n-1);
+				if( t >= i ) t++; // random _other_ node
+				int h = (t*0x9e3779b9)&(capacity-1);
+				while( table[h] != -1 && table[h] != t )
+					h = (h+1)&(capacity-1);
+				if( table[h] == -1 )
+				{
+					table[h] = t;
+					nb[c++] = t;
+				}
+			}
+			for(int c=0; c<kk; ++c)
+			{
+				int h = (nb[c]*0x9e3779b9)&(capacity-1);
+				while( table[h] != -1 ) // clears the whole cluster
+				{
+					table[h] = -1;
+					h = (h+1)&(capacity-1);
+				}
+			}
+			out[i] = nb;
+		}
+	}});
+	return out;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates a Watts-Strogatz graph in bulk, without a {@link Graph}. The model
+* is the same as {@link #wireWS}. The nodes are processed concurrently, see
+* {@link #kOut} for the use of the seed and the threads.
+* @param n the number of nodes
+* @param k lattice parameter
+* @param p the probability of rewiring each edge
+* @param seed determines the random choices
+* @param threads the number of threads to use
+* @return the array of the out-neighbors of each node
+*/
+public static int[][] ws( final int n, final int k, final double p,
+		final long seed, int threads ) {
+
+	final int[][] out = new int[n][];
+	ParallelFor.run(n, threads, new ParallelFor.Range() {
+	public void run(int from, int to) {
+		for(int i=from; i<to; ++i)
+		{
+			int[] nb = new int[2*(k/2)];
+			long key = ((long)i)<<24;
+			int c = 0;
+			for(int j=-k/2; j<=k/2; ++j)
+			{
+				if( j==0 ) continue;
+				int newedge = (i+j+n)%n;
+				if( nextDouble(seed, key++) < p )
+				{
+					newedge = nextInt(seed, key++, n-1);
+					if( newedge >= i ) newedge++;
+				}
+				nb[c++] = newedge;
+			}
+			out[i] = nb;
+		}
+	}});
+	return out;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates a Barabasi-Albert scale free graph in bulk, without a
+* {@link Graph}. The model is the same as {@link #wireScaleFreeBA}. Although
+* the model is defined sequentially, the target of each edge is a function
+* of the seed and of the targets of earlier edges only, which can be
+* resolved on demand (the method of Sanders and Schulz, "Scalable generation
+* of scale-free graphs"). This way the nodes are processed concurrently,
+* and the result is the same for any number of threads.
+* @param n the number of nodes
+* @param k the number of edges generated for each new node
+* @param seed determines the random choices
+* @param threads the number of threads to use
+* @return the array of the out-neighbors of each node
+*/
+public static int[][] scaleFreeBA( final int n, final int k, final long seed,
+		int threads ) {
+
+	final int[][] out = new int[n][];
+	if( n <= k )
+	{
+		for(int i=0; i<n; ++i) out[i] = new int[0];
+		return out;
+	}
+	for(int i=0; i<k; ++i) out[i] = new int[0];
+	out[k] = new int[k];
+	for(int i=0; i<k; ++i) out[k][i] = i;
+
+	// target[e] is the target of edge e, or -1 if not known yet
+	final int[] target = new int[k*(n-k)];
+	Arrays.fill(target,-1);
+	for(int e=0; e<k; ++e) target[e] = e;
+	ParallelFor.run(n-k-1, threads, new ParallelFor.Range() {
+	public void run(int from, int to) {
+		for(int i=k+1+from; i<k+1+to; ++i)
+		{
+			int[] nb = new int[k];
+			for(int j=0; j<k; ++j)
+				nb[j] = resolveBA(target, k+(i-k-1)*k+j, k, seed);
+			out[i] = nb;
+		}
+	}});
+	return out;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the target of the given edge in the graph generated by
+* {@link #scaleFreeBA}, computing it if needed. As in
+* {@link #wireScaleFreeBA}, the target is the node at a random position of
+* the list of the ends of all earlier edges, redrawn if the
+* source is already linked to it. Positions that hold a target are
+* resolved recursively. Concurrent threads may compute the same edge; they
+* get the same result.
+*/
+private static int resolveBA( int[] target, int e, int k, long seed ) {
+
+	int t = target[e];
+	if( t >= 0 ) return t;
+	final int i = k+1+(e-k)/k; // the source
+	final int first = e-(e-k)%k; // the first edge of the source
+	final int len = 2*k*(i-k); // the number of ends drawn so far
+	long key = ((long)e)<<16;
+	search:
+	while(true)
+	{
+		int pos = nextInt(seed, key++, len);
+		t = ( (pos&1)==0 ? sourceBA(pos>>1, k) :
+			resolveBA(target, pos>>1, k, seed) );
+		for(int m=first; m<e; ++m)
+			if( resolveBA(target, m, k, seed) == t ) continue search;
+		break;
+	}
+	target[e] = t;
+	return t;
+}
+
+// -------------------------------------------------------------------
+
+/** The source of the given edge in the graph generated by
+* {@link #scaleFreeBA} */
+private static int sourceBA( int e, int k ) {
+
+	return ( e<k ? k : k+1+(e-k)/k );
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns a random 64 bit number that depends only on the seed and the
+* key (the SplitMix64 mixing function applied to their combination), so
+* that the random numbers of the bulk generators can be computed in any
+* order.
+*/
+private static long random( long seed, long key ) {
+
+	long z = seed + (key+1)*0x9e3779b97f4a7c15L;
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+}
+
+// -------------------------------------------------------------------
+
+/** Returns an integer between 0 (inclusive) and bound (exclusive), see
+* {@link #random}. The bias is at most bound/2^32. */
+private static int nextInt( long seed, long key, int bound ) {
+
+	return (int)(((random(seed,key)>>>32)*bound)>>>32);
+}
+
+// -------------------------------------------------------------------
+
+/** Returns a double between 0 (inclusive) and 1 (exclusive), see
+* {@link #random}. */
+private static double nextDouble( long seed, long key ) {
+
+	return (random(seed,key)>>>11)*0x1.0p-53;
+}
+
 // -------------------------------------------------------------------
 /*
 public static void main(String[] pars) {
@@ -20,6 +20,8 @@ package peersim.graph;
 
 import java.util.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 /**
 * Implements static methods to load and write graphs.
@@ -291,5 +293,210 @@ throws IOException {
 }
 
 
+// -------------------------------------------------------------------
+
+/**
+* Writes the graph in the binary compressed sparse row format that can be
+* memory mapped by {@link CSRGraph}. The file is written through a buffered
+* NIO channel.
+*/
+public static void writeCSR( Graph g, String file ) throws IOException {
+
+	final int n = g.size();
+	long[] offsets = new long[n+1];
+	for(int i=0; i<n; ++i) offsets[i+1] = offsets[i]+g.degree(i);
+	CSRWriter w = new CSRWriter(file, offsets);
+	for(int i=0; i<n; ++i)
+	{
+		int written = 0;
+		for(Integer j : g.getNeighbours(i))
+		{
+			w.putTarget(j);
+			++written;
+		}
+		if( written != g.degree(i) )
+		{
+			w.close();
+			throw new IOException("inconsistent degree of node "+i);
+		}
+	}
+	w.close();
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Writes the graph given by the arrays of out-neighbors of each node (as
+* returned by the bulk generators of {@link GraphFactory}) in the format of
+* {@link CSRGraph}.
+*/
+public static void writeCSR( int[][] out, String file ) throws IOException {
+
+	long[] offsets = new long[out.length+1];
+	for(int i=0; i<out.length; ++i)
+		offsets[i+1] = offsets[i]+out[i].length;
+	CSRWriter w = new CSRWriter(file, offsets);
+	for(int i=0; i<out.length; ++i)
+	for(int j=0; j<out[i].length; ++j) w.putTarget(out[i][j]);
+	w.close();
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Converts a text file in neighbor list format (see
+* {@link #writeNeighborList} and {@link peersim.dynamics.WireFromFile})
+* or in edge list format (see {@link #writeEdgeList}) into the format of
+* {@link CSRGraph}. The text is read twice, first to count the edges of
+* each node, then to collect them, so only the edges are kept in memory.
+* Lines starting with "#" and empty lines are ignored.
+* The number of nodes is one plus the largest ID in the file.
+* @param in the text file
+* @param edgeList true if the format is edge list, false for neighbor list
+* @param out the binary file to be written
+*/
+public static void convertToCSR( String in, boolean edgeList, String out )
+throws IOException {
+
+	// first pass: count the out-degrees
+	int[] degree = new int[1024];
+	int n = 0;
+	LineNumberReader lnr = new LineNumberReader(new FileReader(in));
+	String line;
+	while((line=lnr.readLine()) != null)
+	{
+		if( line.startsWith("#") ) continue;
+		StringTokenizer st = new StringTokenizer(line);
+		if(!st.hasMoreTokens()) continue;
+		final int from = Integer.parseInt(st.nextToken());
+		n = Math.max(n,from+1);
+		while(st.hasMoreTokens())
+		{
+			n = Math.max(n,Integer.parseInt(st.nextToken())+1);
+			if( from >= degree.length )
+				degree = Arrays.copyOf(degree,Math.max(from+1,2*degree.length));
+			degree[from]++;
+			if( edgeList ) break;
+		}
+	}
+	lnr.close();
+	
+	long[] offsets = new long[n+1];
+	for(int i=0; i<n; ++i)
+		offsets[i+1] = offsets[i]+(i<degree.length ? degree[i] : 0);
+	if( offsets[n] > Integer.MAX_VALUE-8 )
+		throw new IOException(in+": too many edges to convert");
+
+	// second pass: collect the targets in the order of the file
+	int[] targets = new int[(int)offsets[n]];
+	long[] next = Arrays.copyOf(offsets,n);
+	lnr = new LineNumberReader(new FileReader(in));
+	while((line=lnr.readLine()) != null)
+	{
+		if( line.startsWith("#") ) continue;
+		StringTokenizer st = new StringTokenizer(line);
+		if(!st.hasMoreTokens()) continue;
+		final int from = Integer.parseInt(st.nextToken());
+		while(st.hasMoreTokens())
+		{
+			targets[(int)next[from]++] = Integer.parseInt(st.nextToken());
+			if( edgeList ) break;
+		}
+	}
+	lnr.close();
+
+	CSRWriter w = new CSRWriter(out, offsets);
+	for(int e=0; e<targets.length; ++e) w.putTarget(targets[e]);
+	w.close();
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Converts graph files into the format of {@link CSRGraph}.
+* Usage: <code>java peersim.graph.GraphIO format input output</code>, where
+* format is "neighborlist", "edgelist" or "newscast" (see
+* {@link #readNewscastGraph}).
+*/
+public static void main( String[] args ) throws IOException {
+
+	if( args.length != 3 )
+	{
+		System.err.println("Usage: java "+GraphIO.class.getName()+
+			" neighborlist|edgelist|newscast input output");
+		System.exit(1);
+	}
+	if( args[0].equals("neighborlist") )
+		convertToCSR(args[1],false,args[2]);
+	else if( args[0].equals("edgelist") )
+		convertToCSR(args[1],true,args[2]);
+	else if( args[0].equals("newscast") )
+		writeCSR(readNewscastGraph(args[1],0),args[2]);
+	else
+	{
+		System.err.println("Unknown format "+args[0]);
+		System.exit(1);
+	}
+}
+
+// ===================== private classes =============================
+// ===================================================================
+
+/**
+* Writes a file in the format of {@link CSRGraph} through a buffered NIO
+* channel. The header and the offsets are written at construction, then the
+* targets have to be given one by one.
+*/
+private static class CSRWriter {
+
+	private final FileChannel channel;
+	
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1<<16);
+	
+	private final long edges;
+	
+	private long written = 0;
+
+	CSRWriter( String file, long[] offsets ) throws IOException {
+		
+		channel = new FileOutputStream(file).getChannel();
+		final int n = offsets.length-1;
+		edges = offsets[n];
+		buffer.put(CSRGraph.MAGIC);
+		buffer.putInt(CSRGraph.VERSION);
+		buffer.putInt(n);
+		buffer.putLong(edges);
+		buffer.putLong(0);
+		for(int i=0; i<=n; ++i)
+		{
+			if( buffer.remaining() < 8 ) drain();
+			buffer.putLong(offsets[i]);
+		}
+	}
+	
+	void putTarget( int target ) throws IOException {
+		
+		if( buffer.remaining() < 4 ) drain();
+		buffer.putInt(target);
+		++written;
+	}
+	
+	void close() throws IOException {
+		
+		drain();
+		channel.close();
+		if( written != edges )
+			throw new IOException("wrote "+written+" edges instead of "+
+				edges);
+	}
+
+	private void drain() throws IOException {
+		
+		buffer.flip();
+		while( buffer.hasRemaining() ) channel.write(buffer);
+		buffer.clear();
+	}
+}
+
 }
 
@@ -53,7 +53,10 @@ private static final String PAR_TRACE = "trace";
  * "stats" will use {@link IncrementalStats#toString}. "freq" will
  * use {@link IncrementalFreq#print}. "list" will print the
  * degrees of the sample nodes one by one in one line, separated by spaces.
- * Default is "stats".
+ * Default is "stats". If the {@link OutputSink} is enabled, "stats" writes
+ * the columns {@link OutputSink#STATS_COLUMNS}, "freq" writes
+ * the sequence of degree and frequency pairs and "list" writes the degrees
+ * as a single row of the table.
  * @config
  */
 private static final String PAR_METHOD = "method";
@@ -86,6 +89,9 @@ private final RandPermutation rp = new RandPermutation(CommonState.r);
 
 private int nextnode = 0;
 
+/** The table of the output sink, or -1 if output is text */
+private final int table;
+
 //--------------------------------------------------------------------------
 //Initialization
 //--------------------------------------------------------------------------
@@ -102,6 +108,12 @@ public DegreeStats(String name)
 	trace = Configuration.contains(name + "." + PAR_TRACE);
 	method = Configuration.getString(name + "." + PAR_METHOD, "stats");
 	type = Configuration.getString(name + "." + PAR_TYPE, "live");
+	if (!OutputSink.isEnabled())
+		table = -1;
+	else if (method.equals("stats"))
+		table = OutputSink.declare(name, OutputSink.STATS_COLUMNS);
+	else
+		table = OutputSink.declare(name);
 	if ((type.equals("all") || type.equals("dead")) && undir) {
 		throw new IllegalParameterException(
 			name + "." + PAR_TYPE, " Parameter "+ name + "." +
@@ -168,18 +180,46 @@ public boolean execute()
 		IncrementalStats stats = new IncrementalStats();
 		for (int i = 0; i < nn; ++i)
 			stats.add(nextDegree());
-		System.out.println(name + ": " + stats);
+		if (table >= 0)
+			OutputSink.write(table, stats);
+		else
+			System.out.println(name + ": " + stats);
 	} else if (method.equals("freq")) {
 		IncrementalFreq stats = new IncrementalFreq();
-		for (int i = 0; i < nn; ++i)
-			stats.add(nextDegree());
-		stats.print(System.out);
-		System.out.println("\n\n");
+		int max = 0;
+		for (int i = 0; i < nn; ++i) {
+			int d = nextDegree();
+			stats.add(d);
+			max = Math.max(max, d);
+		}
+		if (table >= 0) {
+			double[] pairs = new double[2 * (max + 1)];
+			int k = 0;
+			for (int d = 0; d <= max; ++d) {
+				if (stats.getFreq(d) == 0)
+					continue;
+				pairs[k++] = d;
+				pairs[k++] = stats.getFreq(d);
+			}
+			double[] row = new double[k];
+			System.arraycopy(pairs, 0, row, 0, k);
+			OutputSink.write(table, row);
+		} else {
+			stats.print(System.out);
+			System.out.println("\n\n");
+		}
 	} else if (method.equals("list")) {
-		System.out.print(name + ": ");
-		for (int i = 0; i < nn; ++i)
-			System.out.print(nextDegree() + " ");
-		System.out.println();
+		if (table >= 0) {
+			double[] row = new double[nn];
+			for (int i = 0; i < nn; ++i)
+				row[i] = nextDegree();
+			OutputSink.write(table, row);
+		} else {
+			System.out.print(name + ": ");
+			for (int i = 0; i < nn; ++i)
+				System.out.print(nextDegree() + " ");
+			System.out.println();
+		}
 	}
 	return false;
 }
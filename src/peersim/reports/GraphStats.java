@@ -66,6 +66,9 @@ private final int nc;
 
 private final int nl;
 
+/** The table of the output sink, or -1 if output is text */
+private final int table;
+
 
 // ===================== initialization ================================
 // =====================================================================
@@ -81,6 +84,12 @@ public GraphStats(String name) {
 	super(name);
 	nl = Configuration.getInt(name+"."+PAR_NL,0);
 	nc = Configuration.getInt(name+"."+PAR_NC,0);
+	if( !OutputSink.isEnabled() ) table = -1;
+	else if( nc != 0 && nl != 0 )
+		table = OutputSink.declare(name, "clustering", "pathlength");
+	else if( nc != 0 ) table = OutputSink.declare(name, "clustering");
+	else if( nl != 0 ) table = OutputSink.declare(name, "pathlength");
+	else table = OutputSink.declare(name);
 }
 
 
@@ -93,7 +102,9 @@ public GraphStats(String name) {
 * clustering coefficients of randomly selected nodes, and the
 * set of distances from randomly selected nodes to all the other nodes.
 * The output is always concatenated in one line, containing zero, one or two
-* numbers (averages) as defined by the config parameters.
+* numbers (averages) as defined by the config parameters. If the
+* {@link OutputSink} is enabled, the same numbers are written as a row of its
+* table instead.
 * Note that the path length between a pair of nodes can be infinite, in which
 * case the statistics will reflect this (the average will be infinite, etc).
 * See also the configuration parameters.
@@ -103,7 +114,8 @@ public GraphStats(String name) {
 */
 public boolean execute() {
 	
-	System.out.print(name+": ");
+	if( table < 0 ) System.out.print(name+": ");
+	double[] row = new double[(nc != 0 ? 1 : 0) + (nl != 0 ? 1 : 0)];
 	
 	IncrementalStats stats = new IncrementalStats();
 	updateGraph();
@@ -116,7 +128,8 @@ public boolean execute() {
 		{
 			stats.add(GraphAlgorithms.clustering(g,i));
 		}
-		System.out.print(stats.getAverage()+" ");
+		row[0] = stats.getAverage();
+		if( table < 0 ) System.out.print(stats.getAverage()+" ");
 	}
 	
 	if( nl != 0 )
@@ -139,10 +152,12 @@ public boolean execute() {
 					stats.add(ga.d[j]); 
 			}
 		}
-		System.out.print(stats.getAverage());
+		row[row.length-1] = stats.getAverage();
+		if( table < 0 ) System.out.print(stats.getAverage());
 	}
 	
-	System.out.println();
+	if( table >= 0 ) OutputSink.write(table, row);
+	else System.out.println();
 	return false;
 }
 
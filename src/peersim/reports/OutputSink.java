@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import peersim.Simulator;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.rangesim.TaggedOutputStream;
+import peersim.util.IncrementalStats;
+
+/**
+ * A binary sink for the output of observers. If parameter
+ * {@value #PAR_OUTPUT} is defined, observers that support it
+ * (e.g. {@link DegreeStats}, {@link GraphStats} and
+ * {@link peersim.vector.VectorObserver}) write their results into the
+ * given file instead of printing text lines on the standard output. This
+ * avoids formatting numbers as text and parsing them again, which dominates
+ * the cost of observing long simulations, especially when launched by
+ * {@link peersim.rangesim.RangeSimulator}.
+ * <p>
+ * Results are organized in tables. Each observer declares a table with a
+ * name (usually its configuration prefix) and, optionally, the names of its
+ * columns; each invocation of the observer then appends a row that
+ * contains the current time and a sequence of double values. The file is
+ * written through a buffered NIO channel and consists of a sequence of
+ * records, each one starting with a type byte:
+ * <ul>
+ * <li><code>'H'</code>: beginning of a run, followed by the value of the
+ * range parameters of the run (see
+ * {@link TaggedOutputStream#PAR_RANGES}); table ids are local to a run</li>
+ * <li><code>'E'</code>: beginning of an experiment, followed by its
+ * number</li>
+ * <li><code>'T'</code>: table declaration, followed by the table id, its
+ * name and its column names</li>
+ * <li><code>'R'</code>: row, followed by the table id, the time, the number
+ * of values and the values</li>
+ * </ul>
+ * Integers and longs are written as 4 and 8 bytes, doubles as 8 bytes,
+ * all big-endian, and strings as their length followed by their UTF-8
+ * bytes. The file is opened in append mode, so that all the runs of a
+ * range simulation are collected in the same file. The {@link #main}
+ * method converts a file to comma separated values.
+ */
+public class OutputSink
+{
+
+// ======================= constants ===============================
+// =================================================================
+
+/**
+ * The file the observer output is written to. If not defined, observers
+ * print text on the standard output.
+ * @config
+ */
+public static final String PAR_OUTPUT = "simulation.output";
+
+/** Size of the write buffer */
+private static final int BUFSIZE = 1 << 16;
+
+/** Record types */
+private static final byte HEADER = 'H', EXPERIMENT = 'E', TABLE = 'T',
+		ROW = 'R';
+
+/** Column names of the tables written by {@link #write(int,IncrementalStats)} */
+public static final String[] STATS_COLUMNS = { "min", "max", "n",
+		"average", "variance", "countmin", "countmax" };
+
+// ======================= fields ==================================
+// =================================================================
+
+/** The name of the output file, or null if output is text */
+private static String filename;
+
+/** The open channel, null until the first write */
+private static FileChannel channel;
+
+/** The write buffer */
+private static ByteBuffer buffer;
+
+/** The ids of the declared tables */
+private static final Map<String, Integer> tables =
+	new HashMap<String, Integer>();
+
+/** Whether {@link #PAR_OUTPUT} has been read */
+private static boolean configured = false;
+
+// ======================= initialization ==========================
+// =================================================================
+
+/** to prevent construction */
+private OutputSink() {}
+
+// ======================= methods =================================
+// =================================================================
+
+/**
+ * Returns true if observers have to write on this sink instead of printing
+ * text.
+ */
+public static boolean isEnabled()
+{
+	if (!configured) {
+		filename = Configuration.getString(PAR_OUTPUT, null);
+		configured = true;
+	}
+	return filename != null;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Declares a table with the given name and column names, and returns its
+ * id. Declaring the same name again returns the same id. If the number of
+ * values in the rows varies, no column names should be given.
+ */
+public static synchronized int declare(String name, String... columns)
+{
+	Integer id = tables.get(name);
+	if (id != null)
+		return id;
+	id = tables.size();
+	tables.put(name, id);
+	open();
+	int len = 9 + 4 * columns.length + utfLength(name);
+	for (int i = 0; i < columns.length; i++)
+		len += utfLength(columns[i]);
+	ensure(len);
+	buffer.put(TABLE);
+	buffer.putInt(id);
+	putString(name);
+	if (buffer.remaining() < 4)
+		drain();
+	buffer.putInt(columns.length);
+	for (int i = 0; i < columns.length; i++)
+		putString(columns[i]);
+	return id;
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Appends a row with the current time and the given values to the given
+ * table.
+ * @param table an id returned by {@link #declare}
+ */
+public static synchronized void write(int table, double... values)
+{
+	ensure(17 + 8 * values.length);
+	buffer.put(ROW);
+	buffer.putInt(table);
+	buffer.putLong(CommonState.getTime());
+	buffer.putInt(values.length);
+	for (int i = 0; i < values.length; i++) {
+		if (buffer.remaining() < 8)
+			drain();
+		buffer.putDouble(values[i]);
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Appends a row with the given statistics to the given table, in the
+ * order of {@link #STATS_COLUMNS} (the same as
+ * {@link IncrementalStats#toString}).
+ * @param table an id returned by {@link #declare}
+ */
+public static void write(int table, IncrementalStats stats)
+{
+	write(table, stats.getMin(), stats.getMax(), stats.getN(),
+			stats.getAverage(), stats.getVar(), stats.getMinCount(),
+			stats.getMaxCount());
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Marks the beginning of a new experiment. Invoked by {@link Simulator}.
+ */
+public static synchronized void startExperiment(int k)
+{
+	if (!isEnabled())
+		return;
+	open();
+	ensure(5);
+	buffer.put(EXPERIMENT);
+	buffer.putInt(k);
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes the buffered records and closes the file. Nothing happens if
+ * the file is not open.
+ */
+public static synchronized void close()
+{
+	if (channel == null)
+		return;
+	try {
+		drain();
+		channel.close();
+	} catch (IOException e) {
+		throw new RuntimeException(e);
+	} finally {
+		channel = null;
+		tables.clear();
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Opens the file and writes the run header, if not done yet.
+ */
+private static void open()
+{
+	if (channel != null)
+		return;
+	if (!isEnabled())
+		throw new IllegalStateException(PAR_OUTPUT + " is not defined");
+	try {
+		channel = new FileOutputStream(filename, true).getChannel();
+	} catch (IOException e) {
+		throw new IllegalParameterException(PAR_OUTPUT, e.getMessage());
+	}
+	if (buffer == null)
+		buffer = ByteBuffer.allocateDirect(BUFSIZE);
+	String ranges = Configuration.getString(Simulator.PAR_REDIRECT + "."
+			+ TaggedOutputStream.PAR_RANGES, "");
+	ensure(1 + utfLength(ranges));
+	buffer.put(HEADER);
+	putString(ranges);
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Makes sure that the given number of bytes fits in the buffer, draining it
+ * if necessary. Larger records are written in pieces.
+ */
+private static void ensure(int len)
+{
+	if (channel == null)
+		throw new IllegalStateException("no table has been declared");
+	if (buffer.remaining() < Math.min(len, BUFSIZE))
+		drain();
+}
+
+// -----------------------------------------------------------------
+
+/** Writes the content of the buffer on the channel. */
+private static void drain()
+{
+	buffer.flip();
+	try {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	} catch (IOException e) {
+		throw new RuntimeException(e);
+	}
+	buffer.clear();
+}
+
+// -----------------------------------------------------------------
+
+private static int utfLength(String s)
+{
+	return 4 + encode(s).length;
+}
+
+// -----------------------------------------------------------------
+
+private static byte[] encode(String s)
+{
+	try {
+		return s.getBytes("UTF-8");
+	} catch (UnsupportedEncodingException e) {
+		throw new RuntimeException(e);
+	}
+}
+
+// -----------------------------------------------------------------
+
+/**
+ * Writes the given string, draining the buffer as needed, so that strings
+ * longer than the buffer can be written too.
+ */
+private static void putString(String s)
+{
+	byte[] bytes = encode(s);
+	if (buffer.remaining() < 4)
+		drain();
+	buffer.putInt(bytes.length);
+	for (int off = 0; off < bytes.length;) {
+		if (!buffer.hasRemaining())
+			drain();
+		int n = Math.min(buffer.remaining(), bytes.length - off);
+		buffer.put(bytes, off, n);
+		off += n;
+	}
+}
+
+// -----------------------------------------------------------------
+
+private static String readString(DataInputStream in) throws IOException
+{
+	byte[] bytes = new byte[in.readInt()];
+	in.readFully(bytes);
+	return new String(bytes, "UTF-8");
+}
+
+//--------------------------------------------------------------------------
+// Export
+//--------------------------------------------------------------------------
+
+/**
+ * Converts a file written by this class to comma separated values, printed
+ * on the standard output. Each row is printed as
+ * <code>ranges,experiment,table,time,values...</code>; the columns of each
+ * table are printed as a comment line starting with "#" before its first
+ * row. If table names are given after the file name, only these tables
+ * are printed.
+ */
+public static void main(String[] args) throws IOException
+{
+	if (args.length == 0) {
+		System.err.println("Usage: java " + OutputSink.class.getName()
+				+ " file [table ...]");
+		System.exit(1);
+	}
+	Set<String> selected = new HashSet<String>();
+	for (int i = 1; i < args.length; i++)
+		selected.add(args[i]);
+	DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(args[0]), BUFSIZE));
+	PrintStream out = new PrintStream(new BufferedOutputStream(System.out,
+			BUFSIZE), false);
+	List<String> names = new ArrayList<String>();
+	Set<String> printed = new HashSet<String>();
+	String ranges = "";
+	int experiment = 0;
+	int type;
+	while ((type = in.read()) != -1) {
+		switch (type) {
+		case HEADER:
+			ranges = readString(in).trim();
+			experiment = 0;
+			names.clear();
+			break;
+		case EXPERIMENT:
+			experiment = in.readInt();
+			break;
+		case TABLE: {
+			int id = in.readInt();
+			String name = readString(in);
+			String[] columns = new String[in.readInt()];
+			for (int i = 0; i < columns.length; i++)
+				columns[i] = readString(in);
+			while (names.size() <= id)
+				names.add(null);
+			names.set(id, name);
+			if ((selected.isEmpty() || selected.contains(name))
+					&& printed.add(name)) {
+				out.print("# ranges,experiment,table,time");
+				for (int i = 0; i < columns.length; i++)
+					out.print("," + columns[i]);
+				out.println();
+			}
+			break;
+		}
+		case ROW: {
+			String name = names.get(in.readInt());
+			long time = in.readLong();
+			int n = in.readInt();
+			boolean print = selected.isEmpty() || selected.contains(name);
+			if (print)
+				out.print("\"" + ranges + "\"," + experiment + "," + name
+						+ "," + time);
+			for (int i = 0; i < n; i++) {
+				double v = in.readDouble();
+				if (print)
+					out.print("," + v);
+			}
+			if (print)
+				out.println();
+			break;
+		}
+		default:
+			throw new IOException(args[0] + ": unknown record type " + type);
+		}
+	}
+	in.close();
+	out.flush();
+}
+
+}
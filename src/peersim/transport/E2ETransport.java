@@ -37,6 +37,8 @@ import peersim.edsim.*;
 public class E2ETransport implements Transport, RouterInfo
 {
 
+private static final long serialVersionUID = 1L;
+
 //---------------------------------------------------------------------
 //Parameters
 //---------------------------------------------------------------------
@@ -34,6 +34,8 @@ import peersim.edsim.*;
 public final class UniformRandomTransport implements Transport
 {
 
+private static final long serialVersionUID = 1L;
+
 //---------------------------------------------------------------------
 //Parameters
 //---------------------------------------------------------------------
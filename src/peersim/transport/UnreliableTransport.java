@@ -38,6 +38,8 @@ import peersim.core.*;
 public final class UnreliableTransport implements Transport
 {
 
+private static final long serialVersionUID = 1L;
+
 //---------------------------------------------------------------------
 //Parameters
 //---------------------------------------------------------------------
@@ -19,6 +19,7 @@
 package peersim.util;
 
 import java.io.PrintStream;
+import java.util.stream.Collector;
 
 //XXX This implementation is very restricted, to be made more flexible
 // using hashtables.
@@ -177,6 +178,52 @@ public void remove(IncrementalFreq other, boolean strict) {
 
 // ---------------------------------------------------------------------
 
+/**
+ * Performs an element-by-element vector addition of the frequency vectors,
+ * that is, it adds all the items of <code>other</code> to <code>this</code>.
+ * Items that are larger than the maximum of <code>this</code> (if a maximum
+ * was set at construction time) are ignored, like in {@link #add(int,int)}.
+ * The result does not depend on the order in which partial frequencies are
+ * merged.
+ * @param other The instance of IncrementalFreq to add
+ */
+public void merge(IncrementalFreq other) {
+
+	int length = other.freq.length;
+	if (N > 0 && length > N)
+		length = N;
+	while (length > 0 && other.freq[length-1] == 0)
+		length--;
+	if (length > freq.length)
+	{
+		int tmp[] = new int[length];
+		System.arraycopy(freq, 0, tmp, 0, freq.length);
+		freq = tmp;
+	}
+	for (int i=0; i<length; i++)
+	{
+		n += other.freq[i];
+		freq[i] += other.freq[i];
+	}
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Returns a collector that accumulates integers into an IncrementalFreq
+ * without maximum, merging partial results if the stream is parallel.
+ */
+public static Collector<Integer,IncrementalFreq,IncrementalFreq> collector()
+{
+	return Collector.of(IncrementalFreq::new,
+		(IncrementalFreq f, Integer i) -> f.add(i),
+		(IncrementalFreq a, IncrementalFreq b) -> { a.merge(b); return a; },
+		Collector.Characteristics.IDENTITY_FINISH,
+		Collector.Characteristics.UNORDERED);
+}
+
+// ---------------------------------------------------------------------
+
 /**
 * Prints current frequency information. Prints a separate line for
 * all values from 0 to the capacity of the internal representation using the
@@ -18,10 +18,23 @@
 		
 package peersim.util;
 
+import java.util.stream.Collector;
+
 /**
 * A class that can keep track of some statistics like variance, average, min,
 * max incrementally. That is, when adding a new data item, it updates the
 * statistics.
+* <p>
+* Statistics collected over disjoint sets of items can be combined using
+* {@link #merge}, so the items can be processed in parallel, for example
+* with {@link #collector} or
+* <pre>
+* IntStream.range(0,Network.size()).parallel().mapToDouble(...).collect(
+*     IncrementalStats::new, IncrementalStats::add, IncrementalStats::merge);
+* </pre>
+* Note that the order of summation depends on how the items are split, so
+* the average and the variance may differ in the last digits from those
+* computed sequentially.
 */
 public class IncrementalStats {
 
@@ -110,6 +123,47 @@ public void add( double item, int k ) {
 
 // --------------------------------------------------------------------
 
+/**
+* Updates the statistics as if all the items processed by <code>other</code>
+* were added to this object. The other object is not modified.
+*/
+public void merge( IncrementalStats other ) {
+	
+	if( other.min < min )
+	{
+		min = other.min;
+		countmin = other.countmin;
+	}
+	else if( other.min == min ) countmin += other.countmin;
+	if( other.max > max )
+	{
+		max = other.max;
+		countmax = other.countmax;
+	}
+	else if( other.max == max ) countmax += other.countmax;
+	n += other.n;
+	sum += other.sum;
+	sqrsum += other.sqrsum;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns a collector that accumulates numbers into an IncrementalStats,
+* merging partial results if the stream is parallel.
+*/
+public static Collector<Number,IncrementalStats,IncrementalStats>
+collector() {
+
+	return Collector.of(IncrementalStats::new,
+		(IncrementalStats s, Number x) -> s.add(x.doubleValue()),
+		(IncrementalStats a, IncrementalStats b) -> { a.merge(b); return a; },
+		Collector.Characteristics.IDENTITY_FINISH,
+		Collector.Characteristics.UNORDERED);
+}
+
+// --------------------------------------------------------------------
+
 /** The number of data items processed so far */
 public int getN() { return n; }
 
@@ -183,5 +237,56 @@ public String toString() {
 		countmin+" "+countmax;
 }
 
+// --------------------------------------------------------------------
+
+/**
+* Benchmarks the sequential loop used by observers such as
+* {@link peersim.vector.VectorObserver} and
+* {@link peersim.reports.DegreeStats} against a parallel reduction of the
+* same data using {@link #merge} and {@link IncrementalFreq#merge}. The
+* optional arguments are the number of items and the number of repetitions.
+*/
+public static void main( String[] args ) {
+
+	final int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+	final int reps = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+	java.util.Random r = new java.util.Random(1);
+	final double[] values = new double[size];
+	final int[] degrees = new int[size];
+	for(int i=0; i<size; ++i)
+	{
+		values[i] = r.nextDouble()*1000;
+		degrees[i] = 20+(int)(r.nextGaussian()*5);
+	}
+	System.out.println("Available processors: "+
+		Runtime.getRuntime().availableProcessors());
+
+	for(int rep=0; rep<reps; ++rep)
+	{
+		long time = System.nanoTime();
+		IncrementalStats seq = new IncrementalStats();
+		for(int i=0; i<size; ++i) seq.add(values[i]);
+		IncrementalFreq seqf = new IncrementalFreq();
+		for(int i=0; i<size; ++i) seqf.add(degrees[i]);
+		long tseq = System.nanoTime()-time;
+
+		time = System.nanoTime();
+		IncrementalStats par = java.util.Arrays.stream(values).parallel()
+			.collect(IncrementalStats::new, IncrementalStats::add,
+			IncrementalStats::merge);
+		IncrementalFreq parf = java.util.Arrays.stream(degrees).parallel()
+			.collect(IncrementalFreq::new, IncrementalFreq::add,
+			IncrementalFreq::merge);
+		long tpar = System.nanoTime()-time;
+
+		if( par.getN()!=seq.getN() || par.getMin()!=seq.getMin() ||
+		    par.getMaxCount()!=seq.getMaxCount() || !parf.equals(seqf) ||
+		    Math.abs(par.getVar()-seq.getVar()) > 1e-9*seq.getVar() )
+			throw new RuntimeException("merged statistics differ: "+
+				par+" vs "+seq);
+		System.out.println("sequential "+tseq/1000000+" ms, parallel "+
+			tpar/1000000+" ms");
+	}
 }
 
+}
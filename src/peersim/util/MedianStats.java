@@ -18,14 +18,15 @@
 
 package peersim.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 
 /**
  * This class adds the ability to retrieve the median element to the
  * {@link IncrementalStats} class. Note that this class actually stores all
  * the elements, so (unlike in its superclass) storage requirements depend
- * on the number of items processed.
+ * on the number of items processed (8 bytes per item). For large data sets
+ * consider {@link QuantileStats}, which uses bounded memory and provides
+ * arbitrary quantiles at the price of a small approximation error.
  * 
  * @author giampa
  */
@@ -33,7 +34,13 @@ public class MedianStats extends IncrementalStats
 {
 
 /** Structure to store each entry. */
-private final ArrayList<Double> data=new ArrayList<Double>();
+private double[] data = new double[16];
+
+/** The number of entries in {@link #data} */
+private int size;
+
+/** Whether {@link #data} is currently sorted */
+private boolean sorted;
 
 /** Calls {@link #reset}. */
 public MedianStats()
@@ -50,16 +57,19 @@ public double getMedian()
 {
 	double result;
 
-	if (data.isEmpty())
+	if (size == 0)
 		throw new IllegalStateException("Data vector is empty!");
 
-	// Sort the arraylist
-	Collections.sort(data);
-	if (data.size() % 2 != 0) { // odd number
-		result = data.get(data.size() / 2);
+	// Sort the array
+	if (!sorted) {
+		Arrays.sort(data, 0, size);
+		sorted = true;
+	}
+	if (size % 2 != 0) { // odd number
+		result = data[size / 2];
 	} else { // even number:
-		double a = data.get(data.size() / 2);
-		double b = data.get(data.size() / 2 - 1);
+		double a = data[size / 2];
+		double b = data[size / 2 - 1];
 		result = (a + b) / 2;
 	}
 	return result;
@@ -67,17 +77,40 @@ public double getMedian()
 
 public void add(double item, int k)
 {
+	if (size + k > data.length)
+		data = Arrays.copyOf(data, Math.max(2 * data.length, size + k));
 	for (int i = 0; i < k; ++i) {
 		super.add(item, 1);
-		data.add(new Double(item));
+		data[size++] = item;
 	}
+	sorted = false;
+}
+
+/**
+ * Merges the given statistics into this object. Since the median requires
+ * all the elements, <code>other</code> must also be a MedianStats.
+ * @throws IllegalArgumentException if <code>other</code> is not a
+ * MedianStats
+ */
+public void merge(IncrementalStats other)
+{
+	if (!(other instanceof MedianStats))
+		throw new IllegalArgumentException(
+			"Only MedianStats can be merged into MedianStats");
+	MedianStats m = (MedianStats) other;
+	super.merge(other);
+	if (size + m.size > data.length)
+		data = Arrays.copyOf(data, Math.max(2 * data.length, size + m.size));
+	System.arraycopy(m.data, 0, data, size, m.size);
+	size += m.size;
+	sorted = false;
 }
 
 public void reset()
 {
 	super.reset();
-	if (data != null)
-		data.clear();
+	size = 0;
+	sorted = true;
 }
 
 
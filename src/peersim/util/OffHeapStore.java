@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+* A growable array of fixed-size records kept outside the Java heap. The
+* records are stored in direct byte buffers or, if a file name is given, in
+* buffers mapped to that file, so that the operating system can page them
+* out when they do not fit in memory. Either way they are not scanned by the
+* garbage collector, and they take no heap space except for one buffer
+* object per chunk of (at most) 4 MB.
+* <p>
+* Records are identified by their number, starting from 0 in order of
+* allocation, and their fields by their byte offset within the record.
+* New records are filled with zeros. Records are never freed: their owner
+* is expected to reuse them (see {@link peersim.core.Recyclable}).
+* <p>
+* Direct buffers count towards the limit set by the JVM option
+* <code>-XX:MaxDirectMemorySize</code>, which by default is the maximum
+* heap size; mapped buffers do not. The store is serializable: the records
+* are written as a sequence of bytes, and are read back into direct buffers
+* even if they were mapped to a file.
+*/
+public class OffHeapStore implements Serializable {
+
+
+// ======================= private fields ============================
+// ===================================================================
+
+
+private static final long serialVersionUID = 1L;
+
+/** The log2 of the maximum size of a chunk in bytes */
+private static final int CHUNK_BITS = 22;
+
+/** The size of a record in bytes */
+private final int recordSize;
+
+/** The log2 of the number of records in a chunk */
+private final int shift;
+
+/** The file the chunks are mapped to, or null for direct buffers */
+private transient FileChannel channel;
+
+/**
+* The chunks; all of them have (1 &lt;&lt; shift) records. The array is
+* replaced, not modified, when a chunk is added, so that the threads that
+* read it without locking see the chunks it holds.
+*/
+private transient volatile ByteBuffer[] chunks;
+
+/** The number of records allocated */
+private transient long size;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* Creates an empty store of records of the given size in bytes. If the file
+* name is not null, the records are kept in that file, which is created or
+* truncated.
+*/
+public OffHeapStore( int recordSize, String file ) throws IOException {
+
+	if( recordSize < 1 || recordSize > (1 << CHUNK_BITS) )
+		throw new IllegalArgumentException(
+		"recordSize should be in [1,2^"+CHUNK_BITS+"]: "+recordSize);
+	this.recordSize = recordSize;
+	int s = 0;
+	while( ((long)recordSize << (s+1)) <= (1L << CHUNK_BITS) ) ++s;
+	shift = s;
+	chunks = new ByteBuffer[1];
+	if( file != null ) channel = FileChannel.open(Paths.get(file),
+		StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+		StandardOpenOption.READ, StandardOpenOption.WRITE);
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Allocates a new record filled with zeros and returns its number.
+* It can be called concurrently, also with the methods that access
+* records allocated before.
+*/
+public synchronized long allocate() {
+
+	final int c = (int)(size >>> shift);
+	if( c == chunks.length || chunks[c] == null )
+	{
+		ByteBuffer[] tmp = new ByteBuffer[Math.max(chunks.length, 2*c)];
+		System.arraycopy(chunks,0,tmp,0,c);
+		tmp[c] = newChunk(c);
+		chunks = tmp;
+	}
+	return size++;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the number of records allocated. */
+public synchronized long size() { return size; }
+
+// -------------------------------------------------------------------
+
+/** Returns the size of a record in bytes. */
+public int recordSize() { return recordSize; }
+
+// -------------------------------------------------------------------
+
+/** Copies the content of a record to another one. */
+public void copy( long from, long to ) {
+
+	final ByteBuffer src = chunk(from), dst = chunk(to);
+	final int i = index(from,0,recordSize), j = index(to,0,recordSize);
+	int k = 0;
+	for(; k+8 <= recordSize; k += 8) dst.putLong(j+k, src.getLong(i+k));
+	for(; k < recordSize; ++k) dst.put(j+k, src.get(i+k));
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the double at the given offset of the given record. */
+public double getDouble( long record, int offset ) {
+
+	return chunk(record).getDouble(index(record,offset,8));
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the double at the given offset of the given record. */
+public void putDouble( long record, int offset, double value ) {
+
+	chunk(record).putDouble(index(record,offset,8), value);
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the long at the given offset of the given record. */
+public long getLong( long record, int offset ) {
+
+	return chunk(record).getLong(index(record,offset,8));
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the long at the given offset of the given record. */
+public void putLong( long record, int offset, long value ) {
+
+	chunk(record).putLong(index(record,offset,8), value);
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the int at the given offset of the given record. */
+public int getInt( long record, int offset ) {
+
+	return chunk(record).getInt(index(record,offset,4));
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the int at the given offset of the given record. */
+public void putInt( long record, int offset, int value ) {
+
+	chunk(record).putInt(index(record,offset,4), value);
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the byte at the given offset of the given record. */
+public byte getByte( long record, int offset ) {
+
+	return chunk(record).get(index(record,offset,1));
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the byte at the given offset of the given record. */
+public void putByte( long record, int offset, byte value ) {
+
+	chunk(record).put(index(record,offset,1), value);
+}
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+private ByteBuffer chunk( long record ) {
+
+	return chunks[(int)(record >>> shift)];
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the position of the given field in the chunk of its record,
+* checking that the field, of the given width in bytes, is in the record.
+*/
+private int index( long record, int offset, int width ) {
+
+	if( offset < 0 || offset > recordSize-width )
+		throw new IndexOutOfBoundsException("Offset: "+offset+", Width: "+
+		width+", Record size: "+recordSize);
+	return (int)(record & ((1L << shift)-1))*recordSize+offset;
+}
+
+// -------------------------------------------------------------------
+
+private ByteBuffer newChunk( int c ) {
+
+	final long bytes = (long)recordSize << shift;
+	ByteBuffer b;
+	if( channel == null ) b = ByteBuffer.allocateDirect((int)bytes);
+	else
+	{
+		try {
+			b = channel.map(FileChannel.MapMode.READ_WRITE, c*bytes, bytes);
+		} catch( IOException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+	return b.order(ByteOrder.nativeOrder());
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Writes the number of records and their content, chunk by chunk.
+*/
+private void writeObject( ObjectOutputStream out ) throws IOException {
+
+	out.defaultWriteObject();
+	out.writeLong(size);
+	final byte[] buf = new byte[1 << 16];
+	for(int c=0; ((long)c << shift) < size; ++c)
+	{
+		final ByteBuffer b = chunks[c].duplicate();
+		b.position(0);
+		b.limit((int)(Math.min(size-((long)c << shift), 1L << shift)
+			*recordSize));
+		while( b.hasRemaining() )
+		{
+			final int len = Math.min(buf.length, b.remaining());
+			b.get(buf,0,len);
+			out.write(buf,0,len);
+		}
+	}
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Reads a store written by {@link #writeObject} into direct buffers.
+*/
+private void readObject( ObjectInputStream in )
+throws IOException, ClassNotFoundException {
+
+	in.defaultReadObject();
+	final long n = in.readLong();
+	int len = 1;
+	while( ((long)len << shift) < n ) len *= 2;
+	chunks = new ByteBuffer[len];
+	final byte[] buf = new byte[1 << 16];
+	for(int c=0; ((long)c << shift) < n; ++c)
+	{
+		chunks[c] = newChunk(c);
+		final ByteBuffer b = chunks[c].duplicate();
+		b.position(0);
+		b.limit((int)(Math.min(n-((long)c << shift), 1L << shift)
+			*recordSize));
+		while( b.hasRemaining() )
+		{
+			final int k = Math.min(buf.length, b.remaining());
+			in.readFully(buf,0,k);
+			b.put(buf,0,k);
+		}
+	}
+	size = n;
+}
+
+}
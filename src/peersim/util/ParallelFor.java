@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+/**
+* Processes the integers 0,...,n-1 split into contiguous ranges of nearly
+* equal size, one per thread. This is the loop used by all the components
+* that work on the network (or on arrays indexed like it) concurrently,
+* usually with {@link peersim.core.Network#getThreads} threads.
+*/
+public class ParallelFor {
+
+
+// ======================= interfaces ================================
+// ===================================================================
+
+
+/** A range of indexes processed by one thread. */
+public interface Range {
+
+	/** Processes the indexes from <code>from</code> (inclusive) to
+	* <code>to</code> (exclusive). It may be called concurrently for
+	* disjoint ranges. */
+	public void run(int from, int to);
+}
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/** to prevent construction */
+private ParallelFor() {}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Splits 0,...,n-1 into at most the given number of contiguous ranges
+* and processes them concurrently. If only one range is needed, the range
+* is processed in the calling thread. Any exception thrown by the range is
+* rethrown after all the threads have finished.
+*/
+public static void run( int n, int threads, final Range range ) {
+
+	final int t = Math.min(threads, n);
+	if( t <= 1 )
+	{
+		range.run(0,n);
+		return;
+	}
+	final Throwable[] errors = new Throwable[t];
+	Thread[] workers = new Thread[t];
+	for(int k=0; k<t; ++k)
+	{
+		final int index = k;
+		final int from = (int)((long)n*k/t);
+		final int to = (int)((long)n*(k+1)/t);
+		workers[k] = new Thread("ParallelFor-"+k) {
+			public void run() {
+				try { range.run(from,to); }
+				catch( Throwable e ) { errors[index] = e; }
+			}
+		};
+		workers[k].start();
+	}
+	for(int k=0; k<t; ++k)
+	{
+		try { workers[k].join(); }
+		catch( InterruptedException e ) {
+			throw new RuntimeException("Interrupted while waiting for "+
+				"the threads",e);
+		}
+	}
+	for(int k=0; k<t; ++k)
+	{
+		if( errors[k] instanceof RuntimeException )
+			throw (RuntimeException)errors[k];
+		if( errors[k] instanceof Error ) throw (Error)errors[k];
+		if( errors[k] != null ) throw new RuntimeException(errors[k]);
+	}
+}
+
+}
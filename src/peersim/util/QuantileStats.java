@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.util.Arrays;
+
+/**
+* A streaming sketch that estimates arbitrary quantiles (median, percentiles,
+* etc) of a set of numbers using bounded memory. Unlike {@link MedianStats}
+* it does not store the elements: it keeps a hierarchy of buffers (as in the
+* KLL sketch), where an element in level <em>h</em> stands for
+* 2<sup>h</sup> original elements. When a buffer is full it is sorted and
+* every other element is promoted to the next level. The space used is
+* O(k log(n/k)) for <em>n</em> elements, and the rank error of the returned
+* quantiles is in the order of log(n/k)/k. Minimum and maximum are exact.
+* <p>
+* Sketches can be combined with {@link #merge}, so that partial sketches
+* (e.g. computed on different parts of the network, or by different
+* threads) can be reduced to one. The sketch is deterministic; it does not
+* consume random numbers from {@link peersim.core.CommonState#r}.
+*/
+public class QuantileStats {
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+/** The default value of the accuracy parameter */
+public static final int DEFAULT_K = 200;
+
+/** The smallest buffer capacity */
+private static final int MIN_CAPACITY = 8;
+
+/** The accuracy parameter: the capacity of the topmost level */
+private final int k;
+
+/** The buffers of the levels, level 0 holding the unweighted elements */
+private double[][] levels;
+
+/** The number of elements in each level */
+private int[] sizes;
+
+/** The capacity of each level, see {@link #capacity} */
+private int[] capacities;
+
+/** Number of levels in use */
+private int height;
+
+/**
+* The offset used by the next compaction of each level. Alternating it
+* makes the errors of subsequent compactions cancel out.
+*/
+private boolean[] odd;
+
+private long n;
+
+private double min;
+
+private double max;
+
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/** Calls <code>this({@value #DEFAULT_K})</code>. */
+public QuantileStats() { this(DEFAULT_K); }
+
+// --------------------------------------------------------------------
+
+/**
+* @param k the accuracy parameter; memory grows linearly and the error
+* decreases linearly with it
+*/
+public QuantileStats(int k) {
+
+	if( k < MIN_CAPACITY )
+		throw new IllegalArgumentException("k must be at least "+
+			MIN_CAPACITY);
+	this.k = k;
+	reset();
+}
+
+// --------------------------------------------------------------------
+
+/** Resets the sketch to reflect the zero elements set. */
+public void reset() {
+
+	levels = new double[1][k];
+	sizes = new int[1];
+	odd = new boolean[1];
+	height = 1;
+	capacities = new int[] { capacity(0) };
+	n = 0;
+	min = Double.POSITIVE_INFINITY;
+	max = Double.NEGATIVE_INFINITY;
+}
+
+
+// ======================== methods ===================================
+// ====================================================================
+
+
+/** Adds the given element. */
+public final void add( double item ) {
+
+	if( item < min ) min = item;
+	if( item > max ) max = item;
+	++n;
+	if( sizes[0] == levels[0].length ) grow(0, sizes[0]+1);
+	levels[0][sizes[0]++] = item;
+	if( sizes[0] >= capacities[0] ) compress();
+}
+
+// --------------------------------------------------------------------
+
+/** Adds the given element <code>k</code> times. */
+public void add( double item, int k ) {
+
+	for(int i=0; i<k; ++i) add(item);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Adds all the elements summarized by the given sketch to this one. The
+* other sketch is not modified. The result has the same accuracy as a
+* sketch that received all the elements directly.
+*/
+public void merge( QuantileStats other ) {
+
+	if( other.n == 0 ) return;
+	while( height < other.height ) addLevel();
+	for(int h=0; h<other.height; ++h)
+	{
+		grow(h, sizes[h]+other.sizes[h]);
+		System.arraycopy(other.levels[h], 0, levels[h], sizes[h],
+			other.sizes[h]);
+		sizes[h] += other.sizes[h];
+	}
+	n += other.n;
+	if( other.min < min ) min = other.min;
+	if( other.max > max ) max = other.max;
+	compress();
+}
+
+// --------------------------------------------------------------------
+
+/** The number of data items processed so far */
+public long getN() { return n; }
+
+// --------------------------------------------------------------------
+
+/** The minimum of the data items */
+public double getMin() { return min; }
+
+// --------------------------------------------------------------------
+
+/** The maximum of the data items */
+public double getMax() { return max; }
+
+// --------------------------------------------------------------------
+
+/**
+* Returns an estimate of the given quantile, that is, of the value that is
+* larger than or equal to a fraction <code>q</code> of the elements.
+* @param q a number between 0 and 1; 0 returns the minimum and 1 the
+* maximum
+*/
+public double getQuantile( double q ) {
+
+	if( n == 0 )
+		throw new IllegalStateException("Data vector is empty!");
+	if( q < 0 || q > 1 )
+		throw new IllegalArgumentException("Invalid quantile "+q);
+	if( q == 0 ) return min;
+	if( q == 1 ) return max;
+
+	// sorted copies of the levels, walked in merge order
+	double[][] sorted = new double[height][];
+	int[] next = new int[height];
+	long sum = 0;
+	for(int h=0; h<height; ++h)
+	{
+		sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+		Arrays.sort(sorted[h]);
+		sum += ((long)sizes[h]) << h;
+	}
+	final double target = q*sum;
+	long cumulative = 0;
+	while( true )
+	{
+		int best = -1;
+		for(int h=0; h<height; ++h)
+		{
+			if( next[h] < sorted[h].length && (best < 0 ||
+			    sorted[h][next[h]] < sorted[best][next[best]]) )
+				best = h;
+		}
+		if( best < 0 ) break;
+		double value = sorted[best][next[best]++];
+		cumulative += 1L << best;
+		if( cumulative >= target ) return value;
+	}
+	return max;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the estimate of the median, same as
+* <code>getQuantile(0.5)</code>. */
+public double getMedian() { return getQuantile(0.5); }
+
+// --------------------------------------------------------------------
+
+/**
+* Prints the number of elements, minimum, 1%, 5%, 25%, 50%, 75%, 95% and
+* 99% quantiles and maximum, separated by spaces.
+*/
+public String toString() {
+
+	if( n == 0 ) return "0";
+	return n+" "+min+" "+getQuantile(0.01)+" "+getQuantile(0.05)+" "+
+		getQuantile(0.25)+" "+getQuantile(0.5)+" "+getQuantile(0.75)+" "+
+		getQuantile(0.95)+" "+getQuantile(0.99)+" "+max;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* The capacity of the given level. Lower levels have geometrically smaller
+* capacities, so that most of the memory holds highly weighted elements.
+*/
+private int capacity( int h ) {
+
+	int depth = height-1-h;
+	return Math.max(MIN_CAPACITY, (int)Math.ceil(k*Math.pow(2.0/3,depth)));
+}
+
+// --------------------------------------------------------------------
+
+/** Compacts the levels that exceed their capacity, bottom up. */
+private void compress() {
+
+	for(int h=0; h<height; ++h)
+	{
+		if( sizes[h] >= capacities[h] )
+		{
+			if( h+1 == height ) addLevel();
+			compact(h);
+		}
+	}
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Sorts the given level and promotes every other element to the next level.
+* If the number of elements is odd, the largest one stays.
+*/
+private void compact( int h ) {
+
+	int size = sizes[h];
+	double[] level = levels[h];
+	Arrays.sort(level, 0, size);
+	int pairs = size/2;
+	grow(h+1, sizes[h+1]+pairs);
+	double[] up = levels[h+1];
+	int offset = odd[h] ? 1 : 0;
+	odd[h] = !odd[h];
+	for(int i=0; i<pairs; ++i) up[sizes[h+1]++] = level[2*i+offset];
+	if( size%2 == 1 )
+	{
+		level[0] = level[size-1];
+		sizes[h] = 1;
+	}
+	else sizes[h] = 0;
+}
+
+// --------------------------------------------------------------------
+
+private void addLevel() {
+
+	levels = Arrays.copyOf(levels, height+1);
+	sizes = Arrays.copyOf(sizes, height+1);
+	odd = Arrays.copyOf(odd, height+1);
+	levels[height] = new double[k];
+	++height;
+	capacities = new int[height];
+	for(int h=0; h<height; ++h) capacities[h] = capacity(h);
+}
+
+// --------------------------------------------------------------------
+
+/** Makes sure that the buffer of the given level can hold the given
+* number of elements. */
+private void grow( int h, int size ) {
+
+	if( levels[h].length < size )
+		levels[h] = Arrays.copyOf(levels[h],
+			Math.max(size, 2*levels[h].length));
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Compares the estimated quantiles of a stream of random numbers against
+* the exact ones, and reports the time needed to process them. The
+* optional arguments are the number of elements and <code>k</code>.
+*/
+public static void main( String[] args ) {
+
+	int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+	int k = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_K;
+	java.util.Random r = new java.util.Random(1);
+	double[] data = new double[size];
+	for(int i=0; i<size; ++i) data[i] = r.nextGaussian();
+
+	long time = System.currentTimeMillis();
+	QuantileStats s = new QuantileStats(k);
+	for(int i=0; i<size; ++i) s.add(data[i]);
+	System.out.println("Sketch: "+(System.currentTimeMillis()-time)+" ms");
+
+	time = System.currentTimeMillis();
+	MedianStats m = new MedianStats();
+	for(int i=0; i<size; ++i) m.add(data[i]);
+	m.getMedian();
+	System.out.println("MedianStats: "+(System.currentTimeMillis()-time)+
+		" ms");
+
+	// merging two halves must give a sketch of the same quality
+	QuantileStats a = new QuantileStats(k), b = new QuantileStats(k);
+	for(int i=0; i<size; ++i) (i<size/2 ? a : b).add(data[i]);
+	a.merge(b);
+
+	Arrays.sort(data);
+	double[] qs = { 0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99 };
+	for(int i=0; i<qs.length; ++i)
+	{
+		double exact = data[(int)Math.min(size-1, Math.ceil(qs[i]*size)-1)];
+		System.out.println(qs[i]+": exact "+exact+" estimate "+
+			s.getQuantile(qs[i])+" merged "+a.getQuantile(qs[i]));
+	}
+}
+
+}
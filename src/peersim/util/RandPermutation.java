@@ -18,12 +18,20 @@
 		
 package peersim.util;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Random;
 
 /**
 * This class provides a random permutation of indexes. Useful for
 * random sampling without replacement.
+* <p>
+* The permutation is computed lazily by {@link #next}, so drawing a few
+* elements of a large permutation costs time and memory proportional to the
+* number of elements drawn, not to the size of the permutation: the
+* positions that differ from the identity are kept in a small hash table
+* and the full array is only filled when a sizeable part of the permutation
+* has been read. The elements returned are the same as with a full array.
 */
 public class RandPermutation implements IndexIterator {
 
@@ -34,6 +42,19 @@ public class RandPermutation implements IndexIterator {
 
 private int[] buffer = null;
 
+/** True if {@link #buffer} holds the permutation, otherwise it is sparse */
+private boolean dense = false;
+
+/** The positions of the sparse permutation that are not the identity,
+* in an open addressing hash table, -1 if free */
+private int[] keys = null;
+
+/** The elements at the positions in {@link #keys} */
+private int[] values = null;
+
+/** The number of positions in {@link #keys} */
+private int size = 0;
+
 private int len = 0;
 
 private int pointer = 0;
@@ -83,6 +104,7 @@ public RandPermutation( int k, Random r ) {
 public void setPermutation(int k) {
 	
 	reset(k);
+	densify();
 	
 	for(int i=len; i>1; i--)
 	{
@@ -103,7 +125,7 @@ public void setPermutation(int k) {
 public int get(int i) {
 	
 	if( i >= len ) throw new IndexOutOfBoundsException();
-	return buffer[i];
+	return ( dense ? buffer[i] : lookup(i) );
 }
 
 // -------------------------------------------------------------------
@@ -120,13 +142,13 @@ public void reset(int k) {
 	pointer = k;
 	if( len == k ) return;
 	
-	if( buffer == null || buffer.length < k )
+	len = k;
+	dense = false;
+	if( size > 0 )
 	{
-		buffer = new int[k];
+		Arrays.fill(keys,-1);
+		size = 0;
 	}
-	
-	len = k;
-	for( int i=0; i<len; ++i ) buffer[i]=i;
 }
 
 // -------------------------------------------------------------------
@@ -137,11 +159,92 @@ public int next() {
 	if( pointer < 1 ) throw new NoSuchElementException();
 	
 	int j = r.nextInt(pointer);
-	int a = buffer[j];
-	buffer[j] = buffer[pointer-1];
-	buffer[pointer-1] = a;
+	int a;
+	if( dense )
+	{
+		a = buffer[j];
+		buffer[j] = buffer[pointer-1];
+		buffer[pointer-1] = a;
+	}
+	else
+	{
+		a = lookup(j);
+		store(j, lookup(pointer-1));
+		store(pointer-1, a);
+		// the hash table takes more memory per element than the array
+		if( 16*size > len ) densify();
+	}
+	
+	--pointer;
+	return a;
+}
+
+// -------------------------------------------------------------------
+
+/** Fills the array with the sparse permutation. */
+private void densify() {
 	
-	return buffer[--pointer];
+	if( dense ) return;
+	if( buffer == null || buffer.length < len )
+	{
+		buffer = new int[len];
+	}
+	for( int i=0; i<len; ++i ) buffer[i]=i;
+	for( int i=0; size>0 && i<keys.length; ++i )
+	{
+		if( keys[i] >= 0 ) buffer[keys[i]] = values[i];
+	}
+	dense = true;
+}
+
+// -------------------------------------------------------------------
+
+/** The slot of the hash table for the given position. */
+private int slot(int i) {
+	
+	final int mask = keys.length-1;
+	int h = i*0x9e3779b9;
+	h = (h ^ (h>>>16)) & mask;
+	while( keys[h] >= 0 && keys[h] != i ) h = (h+1) & mask;
+	return h;
+}
+
+// -------------------------------------------------------------------
+
+/** The element at the given position of the sparse permutation. */
+private int lookup(int i) {
+	
+	if( size == 0 ) return i;
+	final int h = slot(i);
+	return ( keys[h] < 0 ? i : values[h] );
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the element at the given position of the sparse permutation. */
+private void store(int i, int v) {
+	
+	if( keys == null || 2*(size+1) > keys.length )
+	{
+		int[] oldKeys = keys, oldValues = values;
+		keys = new int[oldKeys == null ? 16 : 2*oldKeys.length];
+		values = new int[keys.length];
+		Arrays.fill(keys,-1);
+		for( int h=0; oldKeys != null && h<oldKeys.length; ++h )
+		{
+			if( oldKeys[h] < 0 ) continue;
+			int n = slot(oldKeys[h]);
+			keys[n] = oldKeys[h];
+			values[n] = oldValues[h];
+		}
+	}
+	final int h = slot(i);
+	if( keys[h] < 0 )
+	{
+		keys[h] = i;
+		size++;
+	}
+	values[h] = v;
 }
 
 // -------------------------------------------------------------------
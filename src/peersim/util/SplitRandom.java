@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+/**
+ * A fast random generator that can be split into independent streams. It
+ * implements the SplitMix64 algorithm (the same as
+ * <code>java.util.SplittableRandom</code>): the state is a 64 bit counter
+ * that is incremented by an odd constant (the gamma) at each step, and the
+ * output is a strong mix of the counter. Unlike
+ * <code>java.util.Random</code>, it is not synchronized, it has a period of
+ * 2<sup>64</sup> and passes the usual statistical test suites. All the
+ * methods of {@link ExtendedRandom} are supported, so it can be used as
+ * the generator of the simulation by setting configuration parameter
+ * {@value peersim.core.CommonState#PAR_RANDOM} to this class. Note that
+ * with the same seed it produces a different sequence than
+ * {@link ExtendedRandom}.
+ * <p>
+ * Independent streams can be derived with {@link #split()}, which also
+ * advances this generator, or deterministically with {@link #split(long)},
+ * which derives a stream from the seed and a key (e.g. a node ID or a
+ * thread index) irrespective of how many numbers have been drawn. Since an
+ * instance is not synchronized, each thread should use its own stream.
+ * {@link #jump} skips any number of steps in constant time.
+ */
+public class SplitRandom extends ExtendedRandom
+{
+
+// ========================= fields =================================
+// ==================================================================
+
+private static final long serialVersionUID = 1L;
+
+/** The default gamma, the odd integer closest to 2^64 divided by phi */
+private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+/** Unit for converting 53 random bits into a double */
+private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+/** Below this mean {@link #nextPoisson} uses the multiplication method */
+private static final double POISSON_SMALL = 10;
+
+/** The counter */
+private long state;
+
+/** The increment of the counter, always odd */
+private long gamma;
+
+/** The next gaussian, if already computed */
+private double nextGaussian;
+
+/** Whether {@link #nextGaussian} is valid */
+private boolean haveNextGaussian;
+
+// ====================== initialization ============================
+// ==================================================================
+
+/**
+ * Creates a generator whose seed will be set by
+ * {@link peersim.core.CommonState}. Invoked by the configuration.
+ * @param prefix the configuration prefix for this class, not used
+ */
+public SplitRandom(String prefix)
+{
+	this(0);
+}
+
+// ------------------------------------------------------------------
+
+/** Creates a generator with the given seed. */
+public SplitRandom(long seed)
+{
+	super(seed);
+}
+
+// ------------------------------------------------------------------
+
+/** Creates a generator with the given state. */
+private SplitRandom(long seed, long state, long gamma)
+{
+	super(seed);
+	this.state = state;
+	this.gamma = gamma;
+}
+
+// ====================== methods ===================================
+// ==================================================================
+
+/**
+ * Sets the seed. Generators with the same seed produce the same sequence.
+ */
+public void setSeed(long seed)
+{
+	super.setSeed(seed);
+	state = seed;
+	gamma = GOLDEN_GAMMA;
+	haveNextGaussian = false;
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Returns a new generator that is statistically independent of this one
+ * and of all the generators split from it. This generator is advanced.
+ */
+public SplitRandom split()
+{
+	return new SplitRandom(getLastSeed(), mix64(nextSeed()),
+			mixGamma(nextSeed()));
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Returns a generator determined only by the seed of this generator (as
+ * returned by {@link #getLastSeed}) and the given key. Different keys give
+ * statistically independent generators. This generator is not advanced,
+ * so the result does not depend on the numbers that have been drawn.
+ */
+public SplitRandom split(long key)
+{
+	long s = mix64(getLastSeed() + GOLDEN_GAMMA * (key + 1));
+	return new SplitRandom(getLastSeed(), mix64(s), mixGamma(s + GOLDEN_GAMMA));
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Advances this generator by the given number of steps, as if
+ * {@link #nextLong()} had been called <code>steps</code> times.
+ */
+public void jump(long steps)
+{
+	state += steps * gamma;
+	haveNextGaussian = false;
+}
+
+// ------------------------------------------------------------------
+
+protected int next(int bits)
+{
+	return (int) (nextLong() >>> (64 - bits));
+}
+
+// ------------------------------------------------------------------
+
+public long nextLong()
+{
+	return mix64(nextSeed());
+}
+
+// ------------------------------------------------------------------
+
+public int nextInt()
+{
+	return (int) (nextLong() >>> 32);
+}
+
+// ------------------------------------------------------------------
+
+public int nextInt(int n)
+{
+	if (n <= 0)
+		throw new IllegalArgumentException("n must be positive");
+	int r = nextInt();
+	int m = n - 1;
+	if ((n & m) == 0) // i.e., n is a power of 2
+		return r & m;
+	for (int u = r >>> 1; u + m - (r = u % n) < 0; u = nextInt() >>> 1)
+		;
+	return r;
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Same as {@link ExtendedRandom#nextLong(long)}, using the same
+ * rejection method as {@link #nextInt(int)}.
+ */
+public long nextLong(long n)
+{
+	if (n <= 0)
+		throw new IllegalArgumentException("n must be positive");
+	long r = nextLong();
+	long m = n - 1;
+	if ((n & m) == 0L) // i.e., n is a power of 2
+		return r & m;
+	for (long u = r >>> 1; u + m - (r = u % n) < 0L; u = nextLong() >>> 1)
+		;
+	return r;
+}
+
+// ------------------------------------------------------------------
+
+public double nextDouble()
+{
+	return (nextLong() >>> 11) * DOUBLE_UNIT;
+}
+
+// ------------------------------------------------------------------
+
+public boolean nextBoolean()
+{
+	return nextLong() < 0;
+}
+
+// ------------------------------------------------------------------
+
+/** Same as <code>java.util.Random.nextGaussian</code>, not synchronized. */
+public double nextGaussian()
+{
+	if (haveNextGaussian) {
+		haveNextGaussian = false;
+		return nextGaussian;
+	}
+	double v1, v2, s;
+	do {
+		v1 = 2 * nextDouble() - 1;
+		v2 = 2 * nextDouble() - 1;
+		s = v1 * v1 + v2 * v2;
+	} while (s >= 1 || s == 0);
+	double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	nextGaussian = v2 * multiplier;
+	haveNextGaussian = true;
+	return v1 * multiplier;
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Extracts the next integer, according to a Poisson distribution. For
+ * small means it uses the same method as {@link ExtendedRandom}, for larger
+ * ones the transformed rejection method of W. Hoermann (PTRS), whose cost
+ * does not depend on the mean.
+ * @param mean The mean of the Poisson distribution.
+ * @return An integer Poisson extraction.
+ */
+public int nextPoisson(double mean)
+{
+	if (mean < POISSON_SMALL)
+		return super.nextPoisson(mean);
+
+	final double slam = Math.sqrt(mean);
+	final double loglam = Math.log(mean);
+	final double b = 0.931 + 2.53 * slam;
+	final double a = -0.059 + 0.02483 * b;
+	final double invalpha = 1.1239 + 1.1328 / (b - 3.4);
+	final double vr = 0.9277 - 3.6224 / (b - 2);
+	while (true) {
+		double u = nextDouble() - 0.5;
+		double v = nextDouble();
+		double us = 0.5 - Math.abs(u);
+		long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+		if (us >= 0.07 && v <= vr)
+			return (int) k;
+		if (k < 0 || (us < 0.013 && v > us))
+			continue;
+		if (Math.log(v) + Math.log(invalpha) - Math.log(a / (us * us) + b)
+				<= -mean + k * loglam - logFactorial(k))
+			return (int) k;
+	}
+}
+
+// ------------------------------------------------------------------
+
+/** Returns the current counter and advances it. */
+private long nextSeed()
+{
+	return state += gamma;
+}
+
+// ------------------------------------------------------------------
+
+/** The finalizer of MurmurHash3, variant 13 of Stafford */
+private static long mix64(long z)
+{
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+}
+
+// ------------------------------------------------------------------
+
+/** Returns an odd gamma with enough bit transitions. */
+private static long mixGamma(long z)
+{
+	z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+	z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+	z = (z ^ (z >>> 33)) | 1L;
+	int n = Long.bitCount(z ^ (z >>> 1));
+	return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+}
+
+// ------------------------------------------------------------------
+
+/** Returns log(k!), exactly for small k, using Stirling's series
+ * otherwise. */
+private static double logFactorial(long k)
+{
+	if (k < 10) {
+		double f = 1;
+		for (int i = 2; i <= k; ++i)
+			f *= i;
+		return Math.log(f);
+	}
+	final double x = k + 1;
+	final double x2 = x * x;
+	return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+			+ (1.0 / 12 - (1.0 / 360 - 1.0 / (1260 * x2)) / x2) / x;
+}
+
+// ------------------------------------------------------------------
+
+/**
+ * Compares the speed of this generator with {@link ExtendedRandom} and
+ * checks the mean and variance of the Poisson extractions. The optional
+ * argument is the number of extractions.
+ */
+public static void main(String[] args)
+{
+	final int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000000;
+	ExtendedRandom[] rs = { new ExtendedRandom(1), new SplitRandom(1) };
+	for (int i = 0; i < rs.length; ++i) {
+		ExtendedRandom r = rs[i];
+		long time = System.nanoTime();
+		long sum = 0;
+		for (int j = 0; j < n; ++j)
+			sum += r.nextInt(1000);
+		double d = 0;
+		for (int j = 0; j < n; ++j)
+			d += r.nextDouble();
+		System.out.println(r.getClass().getSimpleName() + ": " +
+			(System.nanoTime() - time) / 1000000 + " ms (" + sum / n +
+			" " + d / n + ")");
+		IncrementalStats stats = new IncrementalStats();
+		time = System.nanoTime();
+		for (int j = 0; j < n / 100; ++j)
+			stats.add(r.nextPoisson(200));
+		System.out.println("  nextPoisson(200): " +
+			(System.nanoTime() - time) / 1000000 + " ms, mean " +
+			stats.getAverage() + " variance " + stats.getVar());
+	}
+}
+
+}
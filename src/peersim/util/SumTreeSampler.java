@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+* Draws indexes with probability proportional to weights that can change
+* over time. The weights are the leaves of a complete binary tree in which
+* each inner node holds the sum of its children, like in a Fenwick tree:
+* drawing an index and changing a weight both take O(log n) time. Drawing
+* without replacement is done by setting the weight of the drawn index to
+* zero (see {@link #remove}).
+* <p>
+* The sums are recomputed from the children whenever a weight changes,
+* instead of being adjusted by the difference, so rounding errors do not
+* accumulate: an index whose weight is zero is never drawn, however many
+* updates have been done.
+*/
+public class SumTreeSampler {
+
+
+// ======================= private fields ============================
+// ===================================================================
+
+
+/** The number of indexes */
+private final int n;
+
+/** The number of leaves, the smallest power of two not smaller than n */
+private final int leaves;
+
+/** The tree: node i has children 2i and 2i+1, leaf j is node leaves+j */
+private final double[] tree;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* Creates a sampler of the integers from 0 to n-1, all with weight zero.
+*/
+public SumTreeSampler( int n ) {
+
+	if( n < 0 ) throw new IllegalArgumentException(
+		"n should be non-negative: "+n);
+	this.n = n;
+	int l = 1;
+	while( l < n ) l <<= 1;
+	leaves = l;
+	tree = new double[2*leaves];
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Creates a sampler of the integers from 0 to weights.length-1 with the
+* given weights, in linear time.
+*/
+public SumTreeSampler( double[] weights ) {
+
+	this(weights.length);
+	fill(weights, n);
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Sets the weights of the integers from 0 to k-1 to the first k elements of
+* the given array, and the other weights to zero, in linear time.
+*/
+public void fill( double[] weights, int k ) {
+
+	if( k<0 || k>n ) throw new IllegalArgumentException(
+		"k should be non-negative and <= "+n);
+	for(int i=0; i<k; ++i)
+	{
+		check(i, weights[i]);
+		tree[leaves+i] = weights[i];
+	}
+	for(int i=leaves+k; i<2*leaves; ++i) tree[i] = 0;
+	for(int i=leaves-1; i>0; --i) tree[i] = tree[2*i]+tree[2*i+1];
+}
+
+// -------------------------------------------------------------------
+
+/** Sets the weight of the given index. The weight must not be negative. */
+public void set( int i, double w ) {
+
+	if( i<0 || i>=n ) throw new IndexOutOfBoundsException(
+		"Index: "+i+", Size: "+n);
+	check(i, w);
+	int node = leaves+i;
+	tree[node] = w;
+	for(node >>= 1; node > 0; node >>= 1)
+		tree[node] = tree[2*node]+tree[2*node+1];
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the weight of the given index. */
+public double get( int i ) {
+
+	if( i<0 || i>=n ) throw new IndexOutOfBoundsException(
+		"Index: "+i+", Size: "+n);
+	return tree[leaves+i];
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the sum of the weights. */
+public double total() { return tree[1]; }
+
+// -------------------------------------------------------------------
+
+/** Returns the number of indexes. */
+public int size() { return n; }
+
+// -------------------------------------------------------------------
+
+/**
+* Draws an index with probability proportional to its weight, using one
+* number drawn from the given generator.
+* @throws NoSuchElementException if all the weights are zero
+*/
+public int next( Random r ) {
+
+	if( !(tree[1] > 0) ) throw new NoSuchElementException();
+	double d = tree[1]*r.nextDouble();
+	int node = 1;
+	while( node < leaves )
+	{
+		final int left = 2*node;
+		// if the right subtree is empty, do not let rounding select it
+		if( d < tree[left] || tree[left+1] == 0 ) node = left;
+		else
+		{
+			d -= tree[left];
+			node = left+1;
+		}
+	}
+	return node-leaves;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Draws an index as {@link #next} and sets its weight to zero, so that it
+* is not drawn again.
+*/
+public int remove( Random r ) {
+
+	final int i = next(r);
+	set(i, 0);
+	return i;
+}
+
+// -------------------------------------------------------------------
+
+private static void check( int i, double w ) {
+
+	if( !(w >= 0) || Double.isInfinite(w) ) throw new IllegalArgumentException(
+		"weights should be non-negative and finite: w["+i+"]="+w);
+}
+
+}
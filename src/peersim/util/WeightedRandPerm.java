@@ -33,6 +33,10 @@ import java.util.Random;
 * (re-normalized) weights
 * define a new probability distribution, according to which the 2nd element
 * is drawn, and so on.
+* <p>
+* The weights are kept in a {@link SumTreeSampler}, so each sample takes
+* O(log k) time, and resetting a permutation of the same length only
+* restores the weights of the elements that have been drawn.
 */
 public class WeightedRandPerm implements IndexIterator {
 
@@ -40,23 +44,20 @@ public class WeightedRandPerm implements IndexIterator {
 // ======================= private fields ============================
 // ===================================================================
 
+
 /** Holds the weights that are used to initialize the permutation */
 private final double[] w;
 
-/** Holds the sum of the weights until the given index, inclusive. */
-private final double[] wsum;
-
-private int[] buffer = null;
+/** The weights of the elements that have not been drawn yet */
+private final SumTreeSampler tree;
 
-/** Working array for calculating the permutation */ 
-private double[] weights = null;
+/** The elements drawn since the last reset */
+private final int[] drawn;
 
-private int len = 0;
+private int len = -1;
 
 private int pointer = 0;
 
-private double sum = 0.0;
-
 private final Random r;
 
 
@@ -78,9 +79,6 @@ public WeightedRandPerm( Random r, double[] weights ) {
 
 	this.r=r;
 	w = weights.clone();
-	wsum = weights.clone();;
-	this.weights = new double[w.length];
-	buffer = new int[w.length];
 	
 	for(int i=0; i<w.length; ++i)
 	{
@@ -88,7 +86,8 @@ public WeightedRandPerm( Random r, double[] weights ) {
 			"weights should be positive: w["+i+"]="+w[i]);
 	}
 	
-	for(int i=1; i<w.length; ++i) wsum[i]+=wsum[i-1];
+	tree = new SumTreeSampler(w.length);
+	drawn = new int[w.length];
 }
 
 
@@ -100,7 +99,8 @@ public WeightedRandPerm( Random r, double[] weights ) {
 * It initiates a random weighted permutation of the integeres from 0 to k-1.
 * It does not actually calculate the permutation.
 * The permutation can be read using method {@link #next}.
-* If the previous permutation was of the same length, it is more efficient.
+* If the previous permutation was of the same length, it is more efficient:
+* it takes time proportional to the number of elements read from it.
 * The weights set at construction time work as follows.
 * The first sample is drawn according to the probability distribution
 * defined by the (normalized) weights.
@@ -116,19 +116,17 @@ public void reset(int k) {
 		throw new IllegalArgumentException(
 			"k should be non-negative and <= "+w.length);
 	
-	pointer = k;
-	sum = wsum[k-1];
-	
 	if( k != len )
 	{
-		// we need to initialize weights and buffer
-		for(int i=0; i<k; ++i)
-		{
-			weights[i]=w[i];
-			buffer[i]=i;
-		}
+		// we need to initialize the weights
+		tree.fill(w,k);
 		len=k;
 	}
+	else
+	{
+		for(int i=pointer; i<len; ++i) tree.set(drawn[i],w[drawn[i]]);
+	}
+	pointer = k;
 }
 
 // -------------------------------------------------------------------
@@ -146,21 +144,9 @@ public int next() {
 	
 	if( pointer < 1 ) throw new NoSuchElementException();
 	
-	double d = sum*r.nextDouble();
-	int i = pointer;
-	double tmp = weights[i-1];
-	while( tmp < d && i>1 ) tmp += weights[--i-1];
-	
-	// now i-1 is the selected element, we shift it to next position
-	int a = buffer[i-1];
-	double b = weights[i-1];
-	buffer[i-1] = buffer[pointer-1];
-	weights[i-1] = weights[pointer-1];
-	buffer[pointer-1] = a;
-	weights[pointer-1] = b;
-	sum -= b;
-	
-	return buffer[--pointer];
+	int i = tree.remove(r);
+	drawn[--pointer] = i;
+	return i;
 }
 
 // -------------------------------------------------------------------
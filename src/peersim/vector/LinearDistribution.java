@@ -28,6 +28,7 @@ import peersim.core.*;
  * @see peersim.vector
  */
 public class LinearDistribution extends VectControl
+implements ParallelInitializer
 {
 
 //--------------------------------------------------------------------------
@@ -98,9 +99,22 @@ public LinearDistribution(String prefix)
  */
 public boolean execute() {
 	
+	initialize(0,Network.size());
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Initializes the nodes in the given range of indexes. The value of a node
+ * depends only on its index, so disjoint ranges can be initialized
+ * concurrently.
+ */
+public void initialize(int from, int to) {
+	
 	if ( setter.isInteger() )
 	{
-		for(int i=0; i<Network.size(); ++i)
+		for(int i=from; i<to; ++i)
 		{
 			// we avoid the entire expression being cast to double
 			setter.set(i,Math.round(i*step)+min.longValue());
@@ -108,13 +122,11 @@ public boolean execute() {
 	}
 	else
 	{
-		for(int i=0; i<Network.size(); ++i)
+		for(int i=from; i<to; ++i)
 		{
 			setter.set(i,i*step+min.doubleValue());
 		}
 	}
-
-	return false;
 }
 
 
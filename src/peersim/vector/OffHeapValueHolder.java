@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.vector;
+
+import peersim.config.*;
+import peersim.core.*;
+
+/**
+ * Stores a fixed number of double values per node outside the Java heap
+ * (see {@link OffHeapProtocol}), and makes the first one available through
+ * the {@link SingleValue} interface. With one value it can replace
+ * {@link SingleValueHolder}; with more values, the heap footprint of a node
+ * stays the same, whereas an array of values would take heap space
+ * proportional to its length. The other values are accessed with
+ * {@link #getValueAt} and {@link #setValueAt}, whose names differ from
+ * those of {@link #getValue} and {@link #setValue} so that the latter can
+ * be found by {@link Getter} and {@link Setter}.
+ */
+public class OffHeapValueHolder extends OffHeapProtocol
+implements SingleValue
+{
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The number of values stored by each node. Defaults to 1.
+ * @config
+ */
+private static final String PAR_SIZE = "size";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+private static final long serialVersionUID = 1L;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Creates the store of the values, which are initially zero.
+ */
+public OffHeapValueHolder(String prefix)
+{
+	super(prefix, 8*size(prefix));
+}
+
+//--------------------------------------------------------------------------
+
+private static int size(String prefix)
+{
+	int size = Configuration.getInt(prefix+"."+PAR_SIZE, 1);
+	if (size < 1 || size > (1 << 19))
+		throw new IllegalParameterException(prefix+"."+PAR_SIZE,
+			"The number of values should be in [1,2^19]");
+	return size;
+}
+
+//--------------------------------------------------------------------------
+//methods
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the first value.
+ */
+public double getValue()
+{
+	return store.getDouble(record, 0);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Sets the first value.
+ */
+public void setValue(double value)
+{
+	store.putDouble(record, 0, value);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the i-th value.
+ */
+public double getValueAt(int i)
+{
+	return store.getDouble(record, 8*i);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Sets the i-th value.
+ */
+public void setValueAt(int i, double value)
+{
+	store.putDouble(record, 8*i, value);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the number of values.
+ */
+public int size()
+{
+	return store.recordSize()/8;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the first value as a string.
+ */
+public String toString() { return ""+getValue(); }
+
+}
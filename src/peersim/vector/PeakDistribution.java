@@ -30,6 +30,7 @@ import peersim.core.*;
  * @see peersim.vector
  */
 public class PeakDistribution extends VectControl
+implements ParallelInitializer
 {
 
 // --------------------------------------------------------------------------
@@ -113,25 +114,37 @@ public PeakDistribution(String prefix)
  * @return always false
  */
 public boolean execute()
+{
+	initialize(0,Network.size());
+	return false;
+}
+
+// --------------------------------------------------------------------------
+
+/**
+ * Initializes the nodes in the given range of indexes: the nodes with
+ * index less than the number of peaks get the peak value, the others the
+ * background value. Disjoint ranges can be initialized concurrently.
+ */
+public void initialize(int from, int to)
 {
 	int pn = (peaks < 1 ? (int) (peaks*Network.size()) : (int) peaks);
+	int pto = Math.max(from, Math.min(pn, to));
 	
 	if( setter.isInteger() )
 	{
 		long v = value.longValue()/pn;
 		long lv = lvalue.longValue();
-		for (int i=0; i < pn; i++) setter.set(i, v);
-		for (int i=pn; i < Network.size(); i++) setter.set(i,lv);
+		for (int i=from; i < pto; i++) setter.set(i, v);
+		for (int i=pto; i < to; i++) setter.set(i,lv);
 	}
 	else
 	{
 		double v = value.doubleValue()/pn;
 		double lv = lvalue.doubleValue();
-		for (int i=0; i < pn; i++) setter.set(i, v);
-		for (int i=pn; i < Network.size(); i++) setter.set(i,lv);
+		for (int i=from; i < pto; i++) setter.set(i, v);
+		for (int i=pto; i < to; i++) setter.set(i,lv);
 	}
-
-	return false;
 }
 
 // --------------------------------------------------------------------------
@@ -31,6 +31,8 @@ public class SingleValueHolder
 implements SingleValue, Protocol
 {
 
+private static final long serialVersionUID = 1L;
+
 //--------------------------------------------------------------------------
 //Fields
 //--------------------------------------------------------------------------
@@ -18,23 +18,65 @@
 		
 package peersim.vector;
 
+import java.util.*;
+
+import peersim.config.*;
 import peersim.core.*;
+import peersim.reports.OutputSink;
 import peersim.util.*;
 
 /**
  * This class computes and reports statistics information about a vector.
  * Provided statistics include average, max, min, variance,
  * etc. Values are printed according to the string format of {@link 
- * IncrementalStats#toString}.
+ * IncrementalStats#toString}, or written in a table of the
+ * {@link OutputSink} if it is enabled. If {@value #PAR_QUANTILES} is defined,
+ * estimates of the given quantiles (see {@link QuantileStats}) follow the
+ * other statistics.
  * @see VectControl
  * @see peersim.vector
  */
 public class VectorObserver extends VectControl {
 
 
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The quantiles to report, as numbers between 0 and 1 separated by spaces
+ * or commas, e.g. "0.5 0.9 0.99". They are printed after the other
+ * statistics, or written in additional columns named "q" followed by the
+ * quantile. Not defined by default.
+ * @config
+ */
+private static final String PAR_QUANTILES = "quantiles";
+
+/**
+ * The accuracy parameter of the quantile estimates (see
+ * {@link QuantileStats#QuantileStats(int)}). Defaults to
+ * {@value peersim.util.QuantileStats#DEFAULT_K}.
+ * @config
+ */
+private static final String PAR_ACCURACY = "accuracy";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
 /** The name of this observer in the configuration */
 private final String prefix;
 
+/** The table of the output sink, or -1 if output is text */
+private final int table;
+
+/** The quantiles to report, or null if {@value #PAR_QUANTILES} is not
+ * defined */
+private final double[] quantiles;
+
+/** The value of {@value #PAR_ACCURACY} */
+private final int accuracy;
+
 
 //--------------------------------------------------------------------------
 //Initialization
@@ -49,6 +91,51 @@ public VectorObserver(String prefix) {
 
 	super(prefix);
 	this.prefix = prefix;
+	quantiles = readQuantiles(prefix);
+	accuracy = Configuration.getInt(prefix + "." + PAR_ACCURACY,
+			QuantileStats.DEFAULT_K);
+	try {
+		new QuantileStats(accuracy);
+	} catch (IllegalArgumentException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_ACCURACY,
+				e.getMessage());
+	}
+	if (!OutputSink.isEnabled())
+		table = -1;
+	else if (quantiles == null)
+		table = OutputSink.declare(prefix, OutputSink.STATS_COLUMNS);
+	else
+	{
+		final int s = OutputSink.STATS_COLUMNS.length;
+		String[] columns = Arrays.copyOf(OutputSink.STATS_COLUMNS,
+				s + quantiles.length);
+		for (int i = 0; i < quantiles.length; i++)
+			columns[s + i] = "q" + quantiles[i];
+		table = OutputSink.declare(prefix, columns);
+	}
+}
+
+//--------------------------------------------------------------------------
+
+private static double[] readQuantiles(String prefix) {
+
+	if (!Configuration.contains(prefix + "." + PAR_QUANTILES))
+		return null;
+	String[] tokens = Configuration.getString(prefix + "." +
+			PAR_QUANTILES).trim().split("[\\s,]+");
+	double[] q = new double[tokens.length];
+	for (int i = 0; i < tokens.length; i++)
+	{
+		try {
+			q[i] = Double.parseDouble(tokens[i]);
+		} catch (NumberFormatException e) {
+			q[i] = Double.NaN;
+		}
+		if (!(q[i] >= 0 && q[i] <= 1))
+			throw new IllegalParameterException(prefix + "." +
+					PAR_QUANTILES, "Invalid quantile " + tokens[i]);
+	}
+	return q;
 }
 
 //--------------------------------------------------------------------------
@@ -59,20 +146,92 @@ public VectorObserver(String prefix) {
  * Prints statistics information about a vector.
  * Provided statistics include average, max, min, variance,
  * etc. Values are printed according to the string format of {@link 
- * IncrementalStats#toString}.
+ * IncrementalStats#toString}, followed by the quantiles, if any.
+ * If {@link Network#getThreads} is larger than one, the vector is read
+ * concurrently by that many threads and the partial statistics are merged
+ * in the order of the node indexes, so the result is reproducible, but it
+ * may differ in the last digits from the sequential one.
  * @return always false
  */
 public boolean execute() {
 
-	IncrementalStats stats = new IncrementalStats();
-
-	for (int j = 0; j < Network.size(); j++)
+	final IncrementalStats stats;
+	final QuantileStats sketch;
+	if (Network.getThreads() > 1)
 	{
-		Number v = getter.get(j);
-		stats.add( v.doubleValue() );
+		getter.getType(); // resolve the method before sharing the getter
+		final SortedMap<Integer,IncrementalStats> parts =
+			new TreeMap<Integer,IncrementalStats>();
+		final SortedMap<Integer,QuantileStats> sketches =
+			new TreeMap<Integer,QuantileStats>();
+		ParallelFor.run(Network.size(), Network.getThreads(),
+				new ParallelFor.Range() {
+			public void run(int from, int to) {
+				IncrementalStats part = new IncrementalStats();
+				QuantileStats q = quantiles == null ? null :
+					new QuantileStats(accuracy);
+				for (int j = from; j < to; j++)
+				{
+					final double v = getter.get(j).doubleValue();
+					part.add(v);
+					if (q != null) q.add(v);
+				}
+				synchronized (parts)
+				{
+					parts.put(from, part);
+					if (q != null) sketches.put(from, q);
+				}
+			}
+		});
+		stats = new IncrementalStats();
+		for (IncrementalStats part : parts.values())
+			stats.merge(part);
+		sketch = quantiles == null ? null : new QuantileStats(accuracy);
+		for (QuantileStats q : sketches.values())
+			sketch.merge(q);
+	}
+	else
+	{
+		stats = new IncrementalStats();
+		sketch = quantiles == null ? null : new QuantileStats(accuracy);
+		for (int j = 0; j < Network.size(); j++)
+		{
+			Number v = getter.get(j);
+			stats.add( v.doubleValue() );
+			if (sketch != null) sketch.add( v.doubleValue() );
+		}
 	}
 	
-	System.out.println(prefix+": "+stats);	
+	if (sketch == null)
+	{
+		if (table >= 0)
+			OutputSink.write(table, stats);
+		else
+			System.out.println(prefix+": "+stats);
+		return false;
+	}
+
+	double[] q = new double[quantiles.length];
+	for (int i = 0; i < q.length; i++)
+		q[i] = sketch.getN() == 0 ? Double.NaN :
+			sketch.getQuantile(quantiles[i]);
+	if (table >= 0)
+	{
+		// in the order of OutputSink.STATS_COLUMNS, then the quantiles
+		double[] row = { stats.getMin(), stats.getMax(), stats.getN(),
+			stats.getAverage(), stats.getVar(), stats.getMinCount(),
+			stats.getMaxCount() };
+		row = Arrays.copyOf(row, row.length + q.length);
+		System.arraycopy(q, 0, row, row.length - q.length, q.length);
+		OutputSink.write(table, row);
+	}
+	else
+	{
+		StringBuilder buf = new StringBuilder(prefix+": "+stats);
+		for (int i = 0; i < q.length; i++)
+			buf.append(' ').append(q[i]);
+		System.out.println(buf);
+	}
 
 	return false;
 }